@@ -0,0 +1,113 @@
+package com.example;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Generates persons.txt/demerits.txt datasets for the benchmarks.
+ *
+ * IDs are derived from a row number so any index can be turned back into a
+ * valid, unique ID without keeping a list. Demerits follow a rough real-world
+ * shape: most drivers have none, a few have many, points skew low, and dates
+ * spread over the last three years.
+ */
+final class BenchmarkData {
+    static final LocalDate TODAY = LocalDate.of(2025, 6, 30);
+
+    private static final String[] CITIES = { "Melbourne", "Geelong", "Ballarat", "Bendigo",
+            "Shepparton", "Mildura", "Warrnambool", "Traralgon", "Wodonga", "Horsham" };
+    private static final String[] STREETS = { "King", "Queen", "High", "Main", "Station",
+            "Church", "Park", "Victoria", "Elizabeth", "Collins" };
+    private static final char[] ALNUM =
+            "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    // Points 1..6, weighted towards minor offenses.
+    private static final int[] POINT_WEIGHTS = { 30, 25, 25, 12, 5, 3 };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * A valid, unique ID for row n: "[2-9]{2}" + 4 alphanumerics + "#$" +
+     * "[A-Z]{2}", good for well over 10M rows.
+     */
+    static String id(long n) {
+        char[] c = new char[10];
+        c[0] = (char) ('2' + n % 8);
+        c[1] = (char) ('2' + (n / 8) % 8);
+        long rest = n / 64;
+        for (int i = 2; i < 6; i++) {
+            c[i] = ALNUM[(int) (rest % 62)];
+            rest /= 62;
+        }
+        c[6] = '#';
+        c[7] = '$';
+        c[8] = (char) ('A' + rest % 26);
+        c[9] = (char) ('A' + (rest / 26) % 26);
+        return new String(c);
+    }
+
+    static String address(SplittableRandom rnd) {
+        return (1 + rnd.nextInt(300)) + "|" + STREETS[rnd.nextInt(STREETS.length)] + " St|"
+                + CITIES[rnd.nextInt(CITIES.length)] + "|Victoria|Australia";
+    }
+
+    static String birthDate(SplittableRandom rnd) {
+        return LocalDate.of(1950 + rnd.nextInt(58), 1 + rnd.nextInt(12), 1 + rnd.nextInt(28))
+                .format(Person.DTF);
+    }
+
+    static String offenseDate(SplittableRandom rnd) {
+        return TODAY.minusDays(rnd.nextInt(3 * 365)).format(Person.DTF);
+    }
+
+    static int points(SplittableRandom rnd) {
+        int r = rnd.nextInt(100);
+        for (int i = 0; i < POINT_WEIGHTS.length; i++) {
+            r -= POINT_WEIGHTS[i];
+            if (r < 0) {
+                return i + 1;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Writes persons.txt and demerits.txt for the given number of persons into
+     * dir.
+     */
+    static void generate(File dir, int persons, long seed) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        try (BufferedWriter pw = new BufferedWriter(new FileWriter(new File(dir, "persons.txt")), 1 << 16);
+                BufferedWriter dw = new BufferedWriter(new FileWriter(new File(dir, "demerits.txt")), 1 << 16)) {
+            for (int i = 0; i < persons; i++) {
+                String id = id(i);
+                pw.write(String.join("|", id, "First" + i, "Last" + i, address(rnd), birthDate(rnd), "false"));
+                pw.newLine();
+
+                // ~55% clean; otherwise a geometric tail of offenses
+                int offenses = 0;
+                while (rnd.nextInt(100) < (offenses == 0 ? 45 : 50)) {
+                    offenses++;
+                }
+                for (int k = 0; k < offenses; k++) {
+                    dw.write(String.join("|", id, offenseDate(rnd), Integer.toString(points(rnd))));
+                    dw.newLine();
+                }
+            }
+        }
+    }
+
+    static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of the registry against generated datasets.
+ *
+ * Every trial generates its own persons.txt/demerits.txt in a fresh temp
+ * directory and points Person at it, so the working-directory files are never
+ * touched. demeritsFormat compares the demerit storage backends.
+ *
+ *   java -jar target/demo-1.0-SNAPSHOT-benchmarks.jar RegistryBenchmark
+ *   java -jar target/demo-1.0-SNAPSHOT-benchmarks.jar RegistryBenchmark -p persons=1000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryBenchmark {
+    private static final int RENAME_SAMPLE = 4096;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int persons;
+
+    @Param({ "text", "binary" })
+    public String demeritsFormat;
+
+    private File dir;
+    private long nextNewId;
+    private SplittableRandom rnd;
+
+    // For a sample of stored persons, copies differing only in first name
+    private Person[][] renames;
+
+    private Person validPerson;
+    private Person invalidPerson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("roadregistry-bench").toFile();
+        BenchmarkData.generate(dir, persons, 42);
+        if ("binary".equals(demeritsFormat)) {
+            DemeritConverter.toBinary(new File(dir, "demerits.txt"), new File(dir, "demerits.bin"));
+        }
+        System.setProperty(DemeritIndex.FORMAT_PROPERTY, demeritsFormat);
+        Person.useDataDirectory(dir);
+
+        rnd = new SplittableRandom(7);
+        nextNewId = persons;
+        validPerson = new Person(BenchmarkData.id(3), "Alice", "Smith",
+                "123|Main St|Melbourne|Victoria|Australia", "01-01-2000");
+        invalidPerson = new Person("23#$abCDEF", "Bob", "Jones",
+                "10|Oak Rd|Sydney|NSW|Australia", "30-02-2010");
+
+        PersonRegistry stored = new PersonRegistry(new File(dir, "persons.txt"));
+        renames = new Person[Math.min(persons, RENAME_SAMPLE)][];
+        for (int i = 0; i < renames.length; i++) {
+            PersonRecord r = stored.find(BenchmarkData.id(rnd.nextInt(persons)));
+            renames[i] = new Person[] {
+                    new Person(r.id, "Renamed", r.lastName, r.address, r.birthDate),
+                    new Person(r.id, r.firstName, r.lastName, r.address, r.birthDate) };
+        }
+
+        // Load the indexes up front so the first measured call doesn't pay for it.
+        Person.addDemeritPoints(BenchmarkData.id(0), BenchmarkData.offenseDate(rnd), 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Person.useDataDirectory(null);
+        System.clearProperty(DemeritIndex.FORMAT_PROPERTY);
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public boolean addPerson() {
+        return Person.addPerson(new Person(BenchmarkData.id(nextNewId++), "New", "Driver",
+                BenchmarkData.address(rnd), BenchmarkData.birthDate(rnd)));
+    }
+
+    @Benchmark
+    public String addDemeritPoints() {
+        return Person.addDemeritPoints(BenchmarkData.id(rnd.nextInt(persons)),
+                BenchmarkData.offenseDate(rnd), BenchmarkData.points(rnd));
+    }
+
+    @Benchmark
+    public boolean updatePersonalDetails() {
+        // Same ID, address and birth date as stored: only the first name changes.
+        Person[] variants = renames[rnd.nextInt(renames.length)];
+        return Person.updatePersonalDetails(variants[rnd.nextInt(variants.length)]);
+    }
+
+    @Benchmark
+    public boolean monthEndReports() {
+        return Person.writeMonthEndReports(new File(dir, "reports"));
+    }
+
+    @Benchmark
+    public boolean validateAccepted() {
+        return Person.validatePersonFormat(validPerson);
+    }
+
+    @Benchmark
+    public boolean validateRejected() {
+        return Person.validatePersonFormat(invalidPerson);
+    }
+}
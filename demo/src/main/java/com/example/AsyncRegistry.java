@@ -0,0 +1,272 @@
+package com.example;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking facade over the static {@link Person} API.
+ *
+ * Every mutation is queued for one writer thread. The writer takes whatever
+ * has piled up (up to {@link #MAX_BATCH} requests) and applies it in arrival
+ * order, turning each run of consecutive addPerson requests into one
+ * {@link Person#addPersons(Iterable)} and each run of addDemeritPoints requests
+ * into one {@link Person#addDemeritPoints(List)}. Both batch calls give every
+ * request the result it would have had on its own, but cost one append, one
+ * set of suspension rewrites and one log commit for the whole run. Under load
+ * the queue grows and batches grow with it; when idle a request is applied as
+ * soon as it arrives.
+ *
+ * Reads run on virtual threads when the runtime has them (Java 21+, looked up
+ * reflectively so the build can stay on an older release), otherwise on a
+ * small fixed pool. Either way thousands of requests can be in flight without
+ * a platform thread each.
+ *
+ * Results are the same Strings and booleans the blocking methods return.
+ */
+public final class AsyncRegistry implements AutoCloseable {
+    /** Most requests the writer applies in one go. */
+    static final int MAX_BATCH = 1024;
+
+    private static final Write<Void> STOP = new Write<>();
+
+    private final BlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final ExecutorService readers;
+    private final boolean virtualReaders;
+    private final AtomicLong batches = new AtomicLong();
+    private volatile boolean closed;
+
+    public AsyncRegistry() {
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualReaders = virtual != null;
+        this.readers = virtual != null ? virtual
+                : Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                    Thread t = new Thread(r, "registry-reader");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.writer = new Thread(this::drain, "registry-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // --- writes -----------------------------------------------------------------
+
+    public CompletableFuture<Boolean> addPerson(Person person) {
+        return enqueue(new AddPerson(person));
+    }
+
+    public CompletableFuture<String> addDemeritPoints(String id, String offenseDate, int points) {
+        return enqueue(new AddOffense(new Offense(id, offenseDate, points)));
+    }
+
+    public CompletableFuture<List<String>> addDemeritPoints(List<Offense> offenses) {
+        return write(() -> Person.addDemeritPoints(offenses));
+    }
+
+    public CompletableFuture<ImportReport> addPersons(List<Person> persons) {
+        return write(() -> Person.addPersons(persons));
+    }
+
+    public CompletableFuture<Boolean> updatePersonalDetails(Person updatedPerson) {
+        return write(() -> Person.updatePersonalDetails(updatedPerson));
+    }
+
+    /** Runs any other mutation on the writer thread, in order with the rest. */
+    <T> CompletableFuture<T> write(Supplier<T> work) {
+        return enqueue(new Task<>(work));
+    }
+
+    // --- reads ------------------------------------------------------------------
+
+    public CompletableFuture<Integer> currentDemeritPoints(String id) {
+        return read(() -> Person.currentDemeritPoints(id));
+    }
+
+    public CompletableFuture<Boolean> isSuspended(String id) {
+        return read(() -> Person.isSuspended(id));
+    }
+
+    private <T> CompletableFuture<T> read(Supplier<T> work) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("registry closed"));
+        }
+        return CompletableFuture.supplyAsync(work, readers);
+    }
+
+    /** Whether reads run on virtual threads. */
+    public boolean usesVirtualThreads() {
+        return virtualReaders;
+    }
+
+    /** Number of batches the writer has applied. */
+    long batchesApplied() {
+        return batches.get();
+    }
+
+    /**
+     * Applies everything already queued, then stops the writer and the
+     * readers. Requests made after this fail with IllegalStateException.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(STOP);
+        }
+        writer.join();
+        readers.shutdown();
+        readers.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    // --- writer -------------------------------------------------------------------
+
+    private <T> CompletableFuture<T> enqueue(Write<T> w) {
+        // Checked and added together, so nothing can land behind STOP
+        synchronized (queue) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("registry closed"));
+            }
+            queue.add(w);
+        }
+        return w.result;
+    }
+
+    private void drain() {
+        List<Write<?>> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                boolean stop = batch.remove(STOP);
+                apply(batch);
+                batch.clear();
+                if (stop) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Interrupted: fail whatever is still waiting rather than leave it hanging
+        queue.drainTo(batch);
+        for (Write<?> w : batch) {
+            w.result.completeExceptionally(new IllegalStateException("registry writer stopped"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(List<Write<?>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batches.incrementAndGet();
+        int i = 0;
+        while (i < batch.size()) {
+            // A run of same-kind requests goes to the matching batch call
+            Write<?> first = batch.get(i);
+            int end = i + 1;
+            if (!(first instanceof Task)) {
+                while (end < batch.size() && batch.get(end).getClass() == first.getClass()) {
+                    end++;
+                }
+            }
+            List<Write<?>> run = batch.subList(i, end);
+            try {
+                if (first instanceof AddPerson) {
+                    applyPersons((List<AddPerson>) (List<?>) run);
+                } else if (first instanceof AddOffense) {
+                    applyOffenses((List<AddOffense>) (List<?>) run);
+                } else {
+                    ((Task<?>) first).run();
+                }
+            } catch (RuntimeException e) {
+                for (Write<?> w : run) {
+                    w.result.completeExceptionally(e);
+                }
+            }
+            i = end;
+        }
+    }
+
+    private static void applyPersons(List<AddPerson> run) {
+        List<Person> persons = new ArrayList<>(run.size());
+        for (AddPerson w : run) {
+            persons.add(w.person);
+        }
+        ImportReport report = Person.addPersons(persons);
+        for (int k = 0; k < run.size(); k++) {
+            run.get(k).result.complete(report.isAccepted(k));
+        }
+    }
+
+    private static void applyOffenses(List<AddOffense> run) {
+        List<Offense> offenses = new ArrayList<>(run.size());
+        for (AddOffense w : run) {
+            offenses.add(w.offense);
+        }
+        List<String> results = Person.addDemeritPoints(offenses);
+        for (int k = 0; k < run.size(); k++) {
+            run.get(k).result.complete(results.get(k));
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() if this runtime has it,
+     * else null.
+     */
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // --- queued requests --------------------------------------------------------
+
+    private static class Write<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+    }
+
+    private static final class AddPerson extends Write<Boolean> {
+        final Person person;
+
+        AddPerson(Person person) {
+            this.person = person;
+        }
+    }
+
+    private static final class AddOffense extends Write<String> {
+        final Offense offense;
+
+        AddOffense(Offense offense) {
+            this.offense = offense;
+        }
+    }
+
+    private static final class Task<T> extends Write<T> {
+        final Supplier<T> work;
+
+        Task(Supplier<T> work) {
+            this.work = work;
+        }
+
+        void run() {
+            result.complete(work.get());
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar binary storage for demerit records.
+ *
+ * A store is a directory holding one file per column plus a dictionary:
+ *
+ *   dict    person IDs in order of first use, each written with writeUTF;
+ *           an ID's position in this file is its code
+ *   ids     int32 (big-endian) ID code per offense
+ *   days    int32 epoch day per offense
+ *   points  int8 points per offense
+ *
+ * Every column is fixed-width, so appending an offense is 9 bytes and the
+ * n-th offense is at a known offset in each file. Offense dates are kept as
+ * epoch days, so a date comes back as canonical "dd-MM-yyyy" text on export.
+ *
+ * If a crash leaves the columns with different record counts, the extra
+ * trailing bytes are cut off on the next load.
+ */
+final class BinaryDemeritStore implements DemeritStore {
+    /** Records mapped per window while scanning, so column files over 2 GB still work. */
+    private static final int WINDOW_RECORDS = 64 * 1024 * 1024;
+
+    private final File dir;
+    private final WriteAheadLog wal;
+    private final File dictFile;
+    private final File idsFile;
+    private final File daysFile;
+    private final File pointsFile;
+
+    private final List<String> codes = new ArrayList<>();
+    private final Map<String, Integer> codeById = new HashMap<>();
+
+    private long seenPoints = -1;
+    private long seenDict = -1;
+    private long seenModified = -1;
+
+    BinaryDemeritStore(File dir) {
+        this(dir, WriteAheadLog.unlogged());
+    }
+
+    BinaryDemeritStore(File dir, WriteAheadLog wal) {
+        this.dir = dir;
+        this.wal = wal;
+        this.dictFile = new File(dir, "dict");
+        this.idsFile = new File(dir, "ids");
+        this.daysFile = new File(dir, "days");
+        this.pointsFile = new File(dir, "points");
+    }
+
+    File dir() {
+        return dir;
+    }
+
+    /** Receives offenses in storage order. */
+    interface RecordVisitor {
+        void offense(int code, String id, int epochDay, int points) throws IOException;
+    }
+
+    @Override
+    public void load(Timelines timelines, long from) throws IOException {
+        List<DemeritTimeline> byCode = new ArrayList<>();
+        scan(from, (code, id, epochDay, points) -> {
+            while (byCode.size() <= code) {
+                byCode.add(null);
+            }
+            DemeritTimeline timeline = byCode.get(code);
+            if (timeline == null) {
+                timeline = timelines.forId(id);
+                byCode.set(code, timeline);
+            }
+            timeline.add(epochDay, points);
+        });
+    }
+
+    /**
+     * Reads the dictionary, repairs torn tails, and walks every record in
+     * storage order.
+     */
+    void scan(RecordVisitor visitor) throws IOException {
+        scan(0, visitor);
+    }
+
+    /** Same as {@link #scan(RecordVisitor)}, starting at record from. */
+    private void scan(long from, RecordVisitor visitor) throws IOException {
+        loadDictionary();
+        long count = repairColumns();
+        if (count <= from) {
+            remember();
+            return;
+        }
+        scan(codes, from, count, visitor);
+        RegistryMetrics.scanned(count - from, (count - from) * 9 + dictFile.length());
+        remember();
+    }
+
+    @Override
+    public long position() {
+        return size();
+    }
+
+    /** The three columns; the dictionary is read in full on every load anyway. */
+    @Override
+    public File[] files() {
+        return new File[] { idsFile, daysFile, pointsFile };
+    }
+
+    @Override
+    public long[] lengths(long position) {
+        return new long[] { position * 4, position * 4, position };
+    }
+
+    @Override
+    public File location() {
+        return dir;
+    }
+
+    /**
+     * Slices by record number. Only complete records are included and nothing
+     * is repaired, so this leaves the store and its loaded dictionary alone.
+     */
+    @Override
+    public List<Slice> split(int parts) throws IOException {
+        List<String> ids = new ArrayList<>();
+        readDictionary(ids);
+        long count = size();
+        List<Slice> slices = new ArrayList<>(parts);
+        for (int k = 0; k < parts; k++) {
+            long from = count * k / parts;
+            long to = count * (k + 1) / parts;
+            if (from < to) {
+                slices.add(visitor -> {
+                    scan(ids, from, to, (code, id, epochDay, points) -> visitor.offense(id, epochDay, points));
+                    RegistryMetrics.scanned(to - from, (to - from) * 9);
+                });
+            }
+        }
+        return slices;
+    }
+
+    /** Walks records [from, to) in storage order, decoding IDs with codes. */
+    private void scan(List<String> codes, long from, long to, RecordVisitor visitor) throws IOException {
+        try (FileChannel ids = open(idsFile); FileChannel days = open(daysFile);
+                FileChannel points = open(pointsFile)) {
+            for (long first = from; first < to; first += WINDOW_RECORDS) {
+                int n = (int) Math.min(WINDOW_RECORDS, to - first);
+                IntBuffer idCol = ids.map(FileChannel.MapMode.READ_ONLY, first * 4, n * 4L).asIntBuffer();
+                IntBuffer dayCol = days.map(FileChannel.MapMode.READ_ONLY, first * 4, n * 4L).asIntBuffer();
+                MappedByteBuffer pointCol = points.map(FileChannel.MapMode.READ_ONLY, first, n);
+                for (int i = 0; i < n; i++) {
+                    int code = idCol.get(i);
+                    if (code < 0 || code >= codes.size()) {
+                        continue; // not a code we handed out
+                    }
+                    visitor.offense(code, codes.get(code), dayCol.get(i), pointCol.get(i));
+                }
+            }
+        }
+    }
+
+    @Override
+    public long append(List<Offense> offenses, long[] epochDays) throws IOException {
+        for (Offense o : offenses) {
+            if (o.getPoints() < Byte.MIN_VALUE || o.getPoints() > Byte.MAX_VALUE) {
+                throw new IOException("points " + o.getPoints() + " do not fit the binary format");
+            }
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        if (seenDict != dictFile.length()) {
+            loadDictionary();
+        }
+
+        // 1) Dictionary first, so every code written below resolves on reload
+        int[] codeOf = new int[offenses.size()];
+        ByteArrayOutputStream dictBytes = new ByteArrayOutputStream();
+        DataOutputStream dict = new DataOutputStream(dictBytes);
+        for (int i = 0; i < offenses.size(); i++) {
+            String id = offenses.get(i).getPersonId();
+            Integer code = codeById.get(id);
+            if (code == null) {
+                code = codes.size();
+                codes.add(id);
+                codeById.put(id, code);
+                dict.writeUTF(id);
+            }
+            codeOf[i] = code;
+        }
+        long ticket = 0;
+        if (dictBytes.size() > 0) {
+            ticket = wal.append(dictFile, dictBytes.toByteArray());
+        }
+
+        // 2) Fixed-width column appends
+        int n = offenses.size();
+        ByteBuffer ids = ByteBuffer.allocate(n * 4);
+        ByteBuffer days = ByteBuffer.allocate(n * 4);
+        byte[] points = new byte[n];
+        for (int i = 0; i < n; i++) {
+            ids.putInt(codeOf[i]);
+            days.putInt((int) epochDays[i]);
+            points[i] = (byte) offenses.get(i).getPoints();
+        }
+        wal.append(idsFile, ids.array());
+        wal.append(daysFile, days.array());
+        ticket = wal.append(pointsFile, points);
+        remember();
+        return ticket;
+    }
+
+    @Override
+    public boolean isStale() {
+        return pointsFile.length() != seenPoints || dictFile.length() != seenDict
+                || pointsFile.lastModified() != seenModified;
+    }
+
+    /** Number of complete records. */
+    long size() {
+        return Math.min(Math.min(idsFile.length() / 4, daysFile.length() / 4), pointsFile.length());
+    }
+
+    private void loadDictionary() throws IOException {
+        codes.clear();
+        codeById.clear();
+        long good = readDictionary(codes);
+        for (int code = 0; code < codes.size(); code++) {
+            codeById.put(codes.get(code), code);
+        }
+        if (good < dictFile.length()) {
+            truncate(dictFile, good);
+        }
+    }
+
+    /** Adds every complete dictionary entry to ids; returns the bytes they take up. */
+    private long readDictionary(List<String> ids) throws IOException {
+        if (!dictFile.exists()) {
+            return 0;
+        }
+        long good = 0;
+        try (CountingInput counter = new CountingInput(new FileInputStream(dictFile));
+                DataInputStream in = new DataInputStream(counter)) {
+            while (true) {
+                String id;
+                try {
+                    id = in.readUTF();
+                } catch (EOFException eof) {
+                    break;
+                }
+                ids.add(id);
+                good = counter.count;
+            }
+        }
+        return good;
+    }
+
+    private long repairColumns() throws IOException {
+        long count = size();
+        if (idsFile.length() != count * 4) {
+            truncate(idsFile, count * 4);
+        }
+        if (daysFile.length() != count * 4) {
+            truncate(daysFile, count * 4);
+        }
+        if (pointsFile.length() != count) {
+            truncate(pointsFile, count);
+        }
+        return count;
+    }
+
+    private static void truncate(File f, long length) throws IOException {
+        if (!f.exists()) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+            ch.truncate(length);
+        }
+    }
+
+    private static FileChannel open(File f) throws IOException {
+        return FileChannel.open(f.toPath(), StandardOpenOption.READ);
+    }
+
+    private void remember() {
+        seenPoints = pointsFile.length();
+        seenDict = dictFile.length();
+        seenModified = pointsFile.lastModified();
+    }
+
+    /** Counts bytes consumed, so a torn last dictionary entry can be cut off. */
+    private static final class CountingInput extends FilterInputStream {
+        long count;
+
+        CountingInput(InputStream in) {
+            super(new BufferedInputStream(in));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts demerit records between demerits.txt and the columnar
+ * {@link BinaryDemeritStore} format.
+ *
+ * Usage:
+ *   java com.example.DemeritConverter import demerits.txt demerits.bin
+ *   java com.example.DemeritConverter export demerits.bin demerits.txt
+ *
+ * Record order is preserved both ways. Lines that addDemeritPoints would
+ * never count (bad date or points) are dropped on import.
+ */
+public final class DemeritConverter {
+    private static final int BATCH = 64 * 1024;
+
+    private DemeritConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: DemeritConverter import|export <from> <to>");
+            System.exit(2);
+        }
+        long n;
+        if ("import".equals(args[0])) {
+            n = toBinary(new File(args[1]), new File(args[2]));
+        } else if ("export".equals(args[0])) {
+            n = toText(new File(args[1]), new File(args[2]));
+        } else {
+            System.err.println("unknown command: " + args[0]);
+            System.exit(2);
+            return;
+        }
+        System.out.println(n + " records converted");
+    }
+
+    /**
+     * Writes every valid record of a demerits.txt file into a new binary store
+     * directory. Returns the number of records written.
+     */
+    static long toBinary(File text, File binaryDir) throws IOException {
+        if (new File(binaryDir, "points").exists()) {
+            throw new IOException(binaryDir + " already holds a binary store");
+        }
+        BinaryDemeritStore store = new BinaryDemeritStore(binaryDir);
+        List<Offense> batch = new ArrayList<>();
+        long[] days = new long[BATCH];
+        long[] written = { 0 };
+        RecordScanner.scan(text, (buf, start, end) -> {
+            int idEnd = RecordScanner.firstFieldEnd(buf, start, end);
+            if (idEnd == end) {
+                return;
+            }
+            int dateEnd = RecordScanner.indexOf(buf, idEnd + 1, end, (byte) '|');
+            if (dateEnd < 0) {
+                return;
+            }
+            int day = RecordScanner.parseEpochDay(buf, idEnd + 1, dateEnd);
+            int points = RecordScanner.parseInt(buf, dateEnd + 1, RecordScanner.firstFieldEnd(buf, dateEnd + 1, end));
+            if (day == RecordScanner.INVALID || points == RecordScanner.INVALID) {
+                return;
+            }
+            days[batch.size()] = day;
+            // The date text is not stored in the binary form, only its epoch day.
+            batch.add(new Offense(RecordScanner.decode(buf, start, idEnd), null, points));
+            if (batch.size() == BATCH) {
+                store.append(batch, days);
+                written[0] += batch.size();
+                batch.clear();
+            }
+        });
+        store.append(batch, days);
+        return written[0] + batch.size();
+    }
+
+    /**
+     * Writes every record of a binary store as "id|dd-MM-yyyy|points" lines.
+     * Returns the number of records written.
+     */
+    static long toText(File binaryDir, File text) throws IOException {
+        long[] written = { 0 };
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(text, false), 1 << 16)) {
+            new BinaryDemeritStore(binaryDir).scan((code, id, epochDay, points) -> {
+                writer.write(String.join("|", id, LocalDate.ofEpochDay(epochDay).format(Person.DTF),
+                        Integer.toString(points)));
+                writer.newLine();
+                written[0]++;
+            });
+        }
+        return written[0];
+    }
+}
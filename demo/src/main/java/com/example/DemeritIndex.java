@@ -0,0 +1,189 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory index over the demerit records: one {@link DemeritTimeline} per
+ * person ID.
+ *
+ * The records are read once from the configured {@link DemeritStore}; after
+ * that a new offense is appended to both the store and the owner's timeline,
+ * and a window total only looks at that one person. Like
+ * {@link PersonRegistry}, the index is rebuilt if the store's files are changed
+ * by anything other than this class.
+ *
+ * {@link #writeSnapshot()} saves the timelines to a {@link Snapshot}; a later
+ * load starts from it and reads only the offenses stored after it.
+ */
+final class DemeritIndex {
+    /** System property selecting the backend: "text" (default) or "binary". */
+    static final String FORMAT_PROPERTY = "roadregistry.demerits.format";
+
+    private final DemeritStore store;
+    private final WriteAheadLog wal;
+    private final Map<String, DemeritTimeline> timelines = new HashMap<>();
+    private final Map<File, Snapshot.PrefixCrc> crcs = new HashMap<>();
+
+    private boolean loaded;
+
+    DemeritIndex(File file) {
+        this(new TextDemeritStore(file));
+    }
+
+    DemeritIndex(DemeritStore store) {
+        this(store, WriteAheadLog.unlogged());
+    }
+
+    DemeritIndex(DemeritStore store, WriteAheadLog wal) {
+        this.store = store;
+        this.wal = wal;
+    }
+
+    /**
+     * Index over the demerits kept in dir (null for the working directory):
+     * demerits.txt, or the demerits.bin directory when {@link #FORMAT_PROPERTY}
+     * is "binary".
+     */
+    static DemeritIndex open(File dir, String textName, WriteAheadLog wal) {
+        if ("binary".equals(System.getProperty(FORMAT_PROPERTY))) {
+            return new DemeritIndex(new BinaryDemeritStore(new File(dir, "demerits.bin"), wal), wal);
+        }
+        return new DemeritIndex(new TextDemeritStore(new File(dir, textName), wal), wal);
+    }
+
+    DemeritStore store() {
+        return store;
+    }
+
+    /**
+     * Sum of the person's recorded points dated within [fromDay, toDay]
+     * (epoch days, both inclusive).
+     */
+    synchronized int pointsBetween(String id, long fromDay, long toDay) throws IOException {
+        ensureLoaded();
+        DemeritTimeline timeline = timelines.get(id);
+        return timeline == null ? 0 : timeline.pointsBetween((int) fromDay, (int) toDay);
+    }
+
+    /**
+     * Records one offense in the store and in the person's timeline.
+     */
+    void append(String id, String offenseDate, long epochDay, int points) throws IOException {
+        appendAll(Collections.singletonList(new Offense(id, offenseDate, points)), new long[] { epochDay });
+    }
+
+    /**
+     * Records a batch of offenses in one pass, in list order. epochDays[i] is
+     * the parsed date of offenses.get(i). Returns once the write is durable;
+     * the index lock is released while waiting.
+     */
+    void appendAll(List<Offense> offenses, long[] epochDays) throws IOException {
+        long ticket;
+        synchronized (this) {
+            ensureLoaded();
+            ticket = store.append(offenses, epochDays);
+            for (int i = 0; i < offenses.size(); i++) {
+                Offense o = offenses.get(i);
+                timeline(o.getPersonId()).add((int) epochDays[i], o.getPoints());
+            }
+        }
+        wal.awaitDurable(ticket);
+    }
+
+    /** Reads the store now rather than on first use. */
+    synchronized void load() throws IOException {
+        ensureLoaded();
+    }
+
+    /**
+     * Calls the visitor with every person's timeline. The timeline must not be
+     * kept or modified after the call returns.
+     */
+    synchronized void forEachTimeline(BiConsumer<String, DemeritTimeline> visitor) throws IOException {
+        ensureLoaded();
+        timelines.forEach(visitor);
+    }
+
+    private DemeritTimeline timeline(String id) {
+        DemeritTimeline timeline = timelines.get(id);
+        if (timeline == null) {
+            timeline = new DemeritTimeline();
+            timelines.put(id, timeline);
+        }
+        return timeline;
+    }
+
+    /**
+     * Writes every timeline to a {@link Snapshot} next to the store's data,
+     * so the next load only reads offenses appended after this point.
+     */
+    synchronized void writeSnapshot() throws IOException {
+        ensureLoaded();
+        long position = store.position();
+        File[] files = store.files();
+        long[] lengths = store.lengths(position);
+        PrefixMark[] marks = new PrefixMark[files.length];
+        for (int i = 0; i < files.length; i++) {
+            marks[i] = PrefixMark.of(files[i], lengths[i], crc(files[i]));
+        }
+        Snapshot.write(store.location(), out -> {
+            out.putLong(position);
+            out.putInt(marks.length);
+            for (PrefixMark mark : marks) {
+                mark.write(out);
+            }
+            out.putInt(timelines.size());
+            for (Map.Entry<String, DemeritTimeline> e : timelines.entrySet()) {
+                out.putBytes(e.getKey().getBytes(StandardCharsets.UTF_8));
+                e.getValue().write(out);
+            }
+        });
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded && !store.isStale()) {
+            return;
+        }
+        timelines.clear();
+        crcs.clear();
+        // 1) Timelines from the snapshot, if it still matches the store
+        long from = 0;
+        ByteBuffer snapshot = Snapshot.open(store.location());
+        if (snapshot != null && matches(snapshot)) {
+            int count = snapshot.getInt();
+            for (int i = 0; i < count; i++) {
+                String id = new String(Snapshot.getBytes(snapshot), StandardCharsets.UTF_8);
+                timelines.put(id, DemeritTimeline.read(snapshot));
+            }
+            from = snapshot.getLong(0);
+        }
+        // 2) Offenses appended since
+        store.load(this::timeline, from);
+        loaded = true;
+    }
+
+    /** Reads the snapshot's position and marks and checks them against the store. */
+    private boolean matches(ByteBuffer snapshot) throws IOException {
+        long position = snapshot.getLong();
+        File[] files = store.files();
+        long[] lengths = store.lengths(position);
+        int count = snapshot.getInt();
+        boolean matches = count == files.length && position <= store.position();
+        for (int i = 0; i < count; i++) {
+            PrefixMark mark = PrefixMark.read(snapshot);
+            matches = matches && mark.length == lengths[i] && mark.matches(files[i], crc(files[i]));
+        }
+        return matches;
+    }
+
+    private Snapshot.PrefixCrc crc(File file) {
+        return crcs.computeIfAbsent(file, Snapshot.PrefixCrc::new);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where demerit records live on disk. {@link DemeritIndex} keeps the
+ * in-memory timelines and delegates reading and appending to one of these, so
+ * addDemeritPoints behaves the same whichever backend is configured:
+ * {@link TextDemeritStore} (demerits.txt, the default) or
+ * {@link BinaryDemeritStore} (columnar binary files).
+ */
+interface DemeritStore {
+
+    /** Hands out the timeline for an ID, creating it on first use. */
+    interface Timelines {
+        DemeritTimeline forId(String id);
+    }
+
+    /** Receives stored offenses one at a time; see {@link #split(int)}. */
+    interface OffenseVisitor {
+        void offense(String id, int epochDay, int points) throws IOException;
+    }
+
+    /** A contiguous part of the stored offenses. */
+    interface Slice {
+        /**
+         * Streams the slice's offenses in storage order without building
+         * timelines. Consecutive offenses of one person get the same String
+         * instance for the ID.
+         */
+        void forEachOffense(OffenseVisitor visitor) throws IOException;
+    }
+
+    /**
+     * Feeds the stored offenses from position from on (0 for all of them) into
+     * their owners' timelines, in storage order.
+     */
+    void load(Timelines timelines, long from) throws IOException;
+
+    /**
+     * Where the stored offenses end now, in the store's own unit (bytes of
+     * demerits.txt, records of the binary columns). Later appends come after it.
+     */
+    long position() throws IOException;
+
+    /**
+     * The data files whose first {@link #lengths(long)} bytes hold the
+     * offenses before a position; a {@link Snapshot} marks each of them.
+     */
+    File[] files();
+
+    /** For each of {@link #files()}, the bytes taken by the offenses before position. */
+    long[] lengths(long position);
+
+    /** The file or directory holding the offenses; its snapshot sits next to it. */
+    File location();
+
+    /**
+     * Cuts the stored offenses into at most parts slices that together hold
+     * every offense once, in storage order, for reading in parallel. Nothing
+     * may be appended until the slices have been read.
+     */
+    List<Slice> split(int parts) throws IOException;
+
+    /**
+     * Appends offenses in list order. epochDays[i] is the parsed date of
+     * offenses.get(i). Returns the {@link WriteAheadLog} ticket to wait on
+     * before the offenses count as recorded.
+     */
+    long append(List<Offense> offenses, long[] epochDays) throws IOException;
+
+    /** True if the files changed since the last load or append through this store. */
+    boolean isStale();
+}
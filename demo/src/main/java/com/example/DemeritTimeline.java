@@ -0,0 +1,120 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * All offenses of one person, sorted by offense date (as an epoch day).
+ *
+ * Dates live in a plain int[] and points are kept as running prefix sums, so
+ * the points inside any [from, to] day window are two binary searches and a
+ * subtraction. Offenses normally arrive in date order and are appended at the
+ * end; a backdated one is inserted at its place and only the prefix sums after
+ * it are recomputed.
+ */
+final class DemeritTimeline {
+    private int[] days = new int[4];
+    // prefix[i] is the total of the first i offenses; prefix[0] is always 0.
+    private int[] prefix = new int[5];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    int dayAt(int i) {
+        return days[i];
+    }
+
+    int pointsAt(int i) {
+        return prefix[i + 1] - prefix[i];
+    }
+
+    int totalPoints() {
+        return prefix[size];
+    }
+
+    /**
+     * Records an offense. Offenses on the same day keep their arrival order.
+     */
+    void add(int epochDay, int points) {
+        if (size == days.length) {
+            days = Arrays.copyOf(days, size * 2);
+            prefix = Arrays.copyOf(prefix, size * 2 + 1);
+        }
+        int pos = upperBound(epochDay);
+        if (pos < size) {
+            System.arraycopy(days, pos, days, pos + 1, size - pos);
+        }
+        days[pos] = epochDay;
+        size++;
+        // Everything after pos shifts by one and grows by the new points.
+        for (int i = size; i > pos + 1; i--) {
+            prefix[i] = prefix[i - 1] + points;
+        }
+        prefix[pos + 1] = prefix[pos] + points;
+    }
+
+    /**
+     * Sum of points for offenses dated within [fromDay, toDay], both inclusive.
+     */
+    int pointsBetween(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return 0;
+        }
+        return prefix[upperBound(toDay)] - prefix[lowerBound(fromDay)];
+    }
+
+    /** Writes size, days and prefix sums for {@link #read(ByteBuffer)}. */
+    void write(Snapshot.Writer out) throws IOException {
+        out.putInt(size);
+        out.putInts(days, 0, size);
+        out.putInts(prefix, 1, size);
+    }
+
+    /** Reads a timeline written by {@link #write(Snapshot.Writer)}. */
+    static DemeritTimeline read(ByteBuffer in) {
+        DemeritTimeline t = new DemeritTimeline();
+        int size = in.getInt();
+        t.days = new int[Math.max(4, size)];
+        t.prefix = new int[t.days.length + 1];
+        IntBuffer ints = in.asIntBuffer();
+        ints.get(t.days, 0, size);
+        ints.get(t.prefix, 1, size);
+        in.position(in.position() + size * 8);
+        t.size = size;
+        return t;
+    }
+
+    /** First position whose day is >= epochDay. */
+    private int lowerBound(int epochDay) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** First position whose day is > epochDay. */
+    private int upperBound(int epochDay) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] <= epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
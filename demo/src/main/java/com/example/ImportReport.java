@@ -0,0 +1,59 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a {@link Person#addPersons} batch: for every input record, in
+ * input order, whether it was accepted (written to persons.txt) or rejected.
+ * A record is accepted exactly when {@link Person#addPerson} would have
+ * returned true for it.
+ */
+public final class ImportReport {
+    private final List<Person> persons;
+    private final boolean[] accepted;
+
+    ImportReport(List<Person> persons, boolean[] accepted) {
+        this.persons = persons;
+        this.accepted = accepted;
+    }
+
+    /** Number of records in the batch. */
+    public int size() {
+        return accepted.length;
+    }
+
+    /** Whether the record at this position in the batch was written. */
+    public boolean isAccepted(int index) {
+        return accepted[index];
+    }
+
+    public Person get(int index) {
+        return persons.get(index);
+    }
+
+    public int acceptedCount() {
+        int count = 0;
+        for (boolean ok : accepted) {
+            if (ok) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int rejectedCount() {
+        return accepted.length - acceptedCount();
+    }
+
+    /** The records that were not written, in input order. */
+    public List<Person> rejected() {
+        List<Person> out = new ArrayList<>();
+        for (int i = 0; i < accepted.length; i++) {
+            if (!accepted[i]) {
+                out.add(persons.get(i));
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.
+ *
+ * Buckets are log-linear: every power of two is split into four equal
+ * sub-buckets, so any recorded value lands in a bucket at most 25% wider than
+ * itself. That needs 248 counters for the whole long range and makes
+ * {@link #record(long)} one array increment plus two adders, cheap enough to
+ * leave on for every call.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 2;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long sum() {
+        return sum.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Smallest bucket bound that at least the given fraction (0..1) of the
+     * recorded values fall under; 0 if nothing was recorded.
+     */
+    long percentile(double fraction) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exp - SUB_BITS)) & (SUB - 1));
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB) {
+            return bucket;
+        }
+        int exp = bucket / SUB + SUB_BITS - 1;
+        return (long) (SUB + bucket % SUB) << (exp - SUB_BITS);
+    }
+
+    static long upperBound(int bucket) {
+        return bucket + 1 >= BUCKETS ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example;
+
+import java.io.PrintStream;
+
+/**
+ * Receives the registry's metrics at a fixed rate, see
+ * {@link RegistryMetrics#schedule}. Implement this to push them into whatever
+ * monitoring system is in use; JMX needs no reporter.
+ */
+public interface MetricsReporter {
+
+    void report(RegistryMetrics metrics);
+
+    /** Prints every counter and every operation's latencies, one per line. */
+    static MetricsReporter printingTo(PrintStream out) {
+        return metrics -> out.println(metrics);
+    }
+}
@@ -0,0 +1,576 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The rows of persons.txt kept in direct (off-heap) memory, plus an
+ * off-heap hash index from ID to rows.
+ *
+ * Every row takes one fixed 40-byte slot:
+ *
+ *   kind(1) suspended(1) unused(2) textLength(4) textOffset(8)
+ *   street(4) city(4) state(4) country(4) birthDay(4) nextRow(4)
+ *
+ * A well-formed row ("id|first|last|number|street|city|state|country|
+ * dd-MM-yyyy|true/false") keeps "id|first|last|number" as UTF-8 in a text
+ * arena, the four address names as codes into a shared dictionary, the birth
+ * date as an epoch day and the flag as a byte. Anything else (fewer or more
+ * address parts, a date or flag that would not print back the same) is kept
+ * whole in the arena, so {@link #line(int)} always returns exactly the line
+ * that was stored. nextRow links the rows of one ID in row order; the index
+ * holds the first, and {@link #lastRow(String)} follows the links to the
+ * newest.
+ *
+ * Memory is therefore 40 bytes a row, the row's free text, and 4-8 bytes of
+ * index per ID, off the heap; only the dictionary (a few thousand distinct
+ * place names) lives on it. Replacing a row leaves its old text behind in the
+ * arena until the arena is more than half garbage, when it is rewritten.
+ *
+ * The whole store can be written to a {@link Snapshot} and read back from
+ * one without copying: the mapped slots, text and index are used in place.
+ *
+ * Not thread-safe; {@link PersonRegistry} only calls it under its own lock.
+ */
+final class OffHeapPersonStore {
+    private static final int SLOT = 40;
+    private static final int SLOT_BITS = 12; // 4096 slots per chunk
+    private static final int SLOTS_PER_CHUNK = 1 << SLOT_BITS;
+    private static final int MIN_ARENA_CHUNK = 1 << 16;
+    private static final int MAX_ARENA_CHUNK = 1 << 20;
+    private static final long MIN_ARENA_REWRITE = 1 << 20;
+
+    private static final byte STRUCTURED = 0;
+    private static final byte RAW = 1;
+
+    // Slot field offsets
+    private static final int KIND = 0;
+    private static final int SUSPENDED = 1;
+    private static final int TEXT_LENGTH = 4;
+    private static final int TEXT_OFFSET = 8;
+    private static final int STREET = 16;
+    private static final int CITY = 20;
+    private static final int STATE = 24;
+    private static final int COUNTRY = 28;
+    private static final int BIRTH_DAY = 32;
+    private static final int NEXT = 36;
+
+    // Index entries: 0 empty, -1 removed, else first row + 1
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    private final List<ByteBuffer> slots = new ArrayList<>();
+    private final List<ByteBuffer> arena = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    private int rows;
+    private long arenaLive;
+    private long arenaWasted;
+
+    private ByteBuffer index = ByteBuffer.allocateDirect(1024 * 4);
+    private int indexUsed; // live + removed entries
+    private int ids;
+
+    int size() {
+        return rows;
+    }
+
+    /** Number of distinct IDs. */
+    int ids() {
+        return ids;
+    }
+
+    /** Direct memory held for slots, text and index. */
+    long offHeapBytes() {
+        long bytes = (long) slots.size() * SLOTS_PER_CHUNK * SLOT + index.capacity();
+        for (ByteBuffer chunk : arena) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    /** Number of distinct street, city, state and country names. */
+    int dictionarySize() {
+        return names.size();
+    }
+
+    void clear() {
+        rows = 0;
+        arena.clear();
+        arenaLive = 0;
+        arenaWasted = 0;
+        codes.clear();
+        names.clear();
+        for (int i = 0; i < index.capacity(); i += 4) {
+            index.putInt(i, EMPTY);
+        }
+        indexUsed = 0;
+        ids = 0;
+    }
+
+    // --- rows ---------------------------------------------------------------
+
+    /** Stores a line as the next row and indexes it. Returns its row number. */
+    int add(String line) {
+        int row = rows;
+        int chunk = row >>> SLOT_BITS;
+        if (chunk == slots.size()) {
+            slots.add(ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * SLOT));
+        } else if (slots.get(chunk).capacity() < SLOTS_PER_CHUNK * SLOT) {
+            // A snapshot's last chunk only holds the rows it had
+            ByteBuffer full = ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * SLOT);
+            full.put(slots.get(chunk).duplicate().clear());
+            slots.set(chunk, full);
+        }
+        rows++;
+        write(row, line);
+        link(row);
+        return row;
+    }
+
+    /** Replaces a row, moving it to another ID's rows if the ID changed. */
+    void set(int row, String line) {
+        byte[] oldId = idBytes(row);
+        byte[] newId = PersonRecord.keyOf(line).getBytes(StandardCharsets.UTF_8);
+        boolean sameId = Arrays.equals(oldId, newId);
+        if (!sameId) {
+            unlink(row, oldId);
+        }
+        arenaWasted += slot(row).getInt(offset(row) + TEXT_LENGTH);
+        arenaLive -= slot(row).getInt(offset(row) + TEXT_LENGTH);
+        int next = slot(row).getInt(offset(row) + NEXT);
+        write(row, line);
+        if (sameId) {
+            slot(row).putInt(offset(row) + NEXT, next);
+        } else {
+            link(row);
+        }
+        if (arenaWasted > MIN_ARENA_REWRITE && arenaWasted > arenaLive) {
+            rewriteArena();
+        }
+    }
+
+    /** The row exactly as it was stored. */
+    String line(int row) {
+        ByteBuffer s = slot(row);
+        int at = offset(row);
+        String text = text(s.getLong(at + TEXT_OFFSET), s.getInt(at + TEXT_LENGTH));
+        if (s.get(at + KIND) == RAW) {
+            return text;
+        }
+        return text + '|' + names.get(s.getInt(at + STREET))
+                + '|' + names.get(s.getInt(at + CITY))
+                + '|' + names.get(s.getInt(at + STATE))
+                + '|' + names.get(s.getInt(at + COUNTRY))
+                + '|' + LocalDate.ofEpochDay(s.getInt(at + BIRTH_DAY)).format(Person.DTF)
+                + '|' + (s.get(at + SUSPENDED) != 0);
+    }
+
+    /** The row as a record, or null if it does not parse as a person. */
+    PersonRecord record(int row) {
+        ByteBuffer s = slot(row);
+        int at = offset(row);
+        String text = text(s.getLong(at + TEXT_OFFSET), s.getInt(at + TEXT_LENGTH));
+        if (s.get(at + KIND) == RAW) {
+            return PersonRecord.parse(text);
+        }
+        String[] head = text.split("\\|", -1); // id, first, last, number
+        String address = head[3] + '|' + names.get(s.getInt(at + STREET))
+                + '|' + names.get(s.getInt(at + CITY))
+                + '|' + names.get(s.getInt(at + STATE))
+                + '|' + names.get(s.getInt(at + COUNTRY));
+        return new PersonRecord(head[0], head[1], head[2], address,
+                LocalDate.ofEpochDay(s.getInt(at + BIRTH_DAY)).format(Person.DTF),
+                s.get(at + SUSPENDED) != 0);
+    }
+
+    private void write(int row, String line) {
+        ByteBuffer s = slot(row);
+        int at = offset(row);
+        String[] parts = line.split("\\|", -1);
+        int birthDay = 0;
+        boolean structured = parts.length == 10
+                && ("true".equals(parts[9]) || "false".equals(parts[9]));
+        if (structured) {
+            try {
+                LocalDate birth = LocalDate.parse(parts[8], Person.DTF);
+                structured = birth.format(Person.DTF).equals(parts[8]);
+                birthDay = (int) birth.toEpochDay();
+            } catch (DateTimeParseException e) {
+                structured = false;
+            }
+        }
+        byte[] text;
+        if (structured) {
+            text = (parts[0] + '|' + parts[1] + '|' + parts[2] + '|' + parts[3]).getBytes(StandardCharsets.UTF_8);
+            s.put(at + KIND, STRUCTURED);
+            s.put(at + SUSPENDED, (byte) ("true".equals(parts[9]) ? 1 : 0));
+            s.putInt(at + STREET, code(parts[4]));
+            s.putInt(at + CITY, code(parts[5]));
+            s.putInt(at + STATE, code(parts[6]));
+            s.putInt(at + COUNTRY, code(parts[7]));
+            s.putInt(at + BIRTH_DAY, birthDay);
+        } else {
+            text = line.getBytes(StandardCharsets.UTF_8);
+            s.put(at + KIND, RAW);
+        }
+        s.putLong(at + TEXT_OFFSET, store(text));
+        s.putInt(at + TEXT_LENGTH, text.length);
+        s.putInt(at + NEXT, 0);
+    }
+
+    private int code(String name) {
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = names.size();
+            codes.put(name, code);
+            names.add(name);
+        }
+        return code;
+    }
+
+    private ByteBuffer slot(int row) {
+        return slots.get(row >>> SLOT_BITS);
+    }
+
+    private static int offset(int row) {
+        return (row & (SLOTS_PER_CHUNK - 1)) * SLOT;
+    }
+
+    // --- text arena ---------------------------------------------------------
+
+    /** Appends bytes to the arena; returns chunk << 32 | position. */
+    private long store(byte[] bytes) {
+        return store(ByteBuffer.wrap(bytes));
+    }
+
+    /** Appends the remaining bytes of src to the arena. */
+    private long store(ByteBuffer src) {
+        int length = src.remaining();
+        ByteBuffer chunk = arena.isEmpty() ? null : arena.get(arena.size() - 1);
+        if (chunk == null || chunk.remaining() < length) {
+            // Chunks double up to 1 MB, so a small registry stays small
+            int size = chunk == null ? MIN_ARENA_CHUNK : Math.min(MAX_ARENA_CHUNK, chunk.capacity() * 2);
+            chunk = ByteBuffer.allocateDirect(Math.max(size, length));
+            arena.add(chunk);
+        }
+        long at = ((long) (arena.size() - 1) << 32) | chunk.position();
+        chunk.put(src);
+        arenaLive += length;
+        return at;
+    }
+
+    private String text(long at, int length) {
+        byte[] bytes = new byte[length];
+        readText(at, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void readText(long at, byte[] into) {
+        ByteBuffer chunk = arena.get((int) (at >>> 32)).duplicate();
+        chunk.position((int) at);
+        chunk.get(into);
+    }
+
+    /** Copies every live row's text into a fresh arena, dropping replaced text. */
+    private void rewriteArena() {
+        List<ByteBuffer> old = new ArrayList<>(arena);
+        arena.clear();
+        arenaLive = 0;
+        arenaWasted = 0;
+        for (int row = 0; row < rows; row++) {
+            ByteBuffer s = slot(row);
+            int at = offset(row);
+            long from = s.getLong(at + TEXT_OFFSET);
+            byte[] bytes = new byte[s.getInt(at + TEXT_LENGTH)];
+            ByteBuffer chunk = old.get((int) (from >>> 32)).duplicate();
+            chunk.position((int) from);
+            chunk.get(bytes);
+            s.putLong(at + TEXT_OFFSET, store(bytes));
+        }
+    }
+
+    // --- snapshot -----------------------------------------------------------
+
+    /**
+     * Writes the rows, dictionary and index for {@link #read(ByteBuffer)}:
+     * the slots with each text offset pointing into one text block, that
+     * block (each row's text in row order, so replaced text is left out), the
+     * dictionary names in code order and the index table.
+     */
+    void write(Snapshot.Writer out) throws IOException {
+        out.putInt(rows);
+        ByteBuffer copy = ByteBuffer.allocate(SLOTS_PER_CHUNK * SLOT);
+        long textAt = 0;
+        for (int chunk = 0; chunk * SLOTS_PER_CHUNK < rows; chunk++) {
+            int count = Math.min(rows - chunk * SLOTS_PER_CHUNK, SLOTS_PER_CHUNK);
+            ByteBuffer src = slots.get(chunk).duplicate();
+            src.clear().limit(count * SLOT);
+            copy.clear();
+            copy.put(src);
+            for (int at = 0; at < count * SLOT; at += SLOT) {
+                copy.putLong(at + TEXT_OFFSET, textAt);
+                textAt += copy.getInt(at + TEXT_LENGTH);
+            }
+            copy.flip();
+            out.put(copy);
+        }
+        out.putLong(textAt);
+        for (int row = 0; row < rows; row++) {
+            ByteBuffer s = slot(row);
+            int at = offset(row);
+            long from = s.getLong(at + TEXT_OFFSET);
+            ByteBuffer text = arena.get((int) (from >>> 32)).duplicate();
+            text.limit((int) from + s.getInt(at + TEXT_LENGTH)).position((int) from);
+            out.put(text);
+        }
+        out.putInt(names.size());
+        for (String name : names) {
+            out.putBytes(name.getBytes(StandardCharsets.UTF_8));
+        }
+        out.putInt(index.capacity());
+        out.putInt(indexUsed);
+        out.putInt(ids);
+        out.put(index.duplicate().clear());
+    }
+
+    /**
+     * Replaces the contents with a snapshot written by
+     * {@link #write(Snapshot.Writer)}, reading it from in's position on. The
+     * slots, the text block and the index are used where they lie in in, a
+     * private mapping from {@link Snapshot#open(File)}: nothing is copied or
+     * parsed but the dictionary, and later writes copy only the pages they
+     * touch.
+     */
+    void read(ByteBuffer in) {
+        clear();
+        int count = in.getInt();
+        slots.clear();
+        for (int chunk = 0; chunk * SLOTS_PER_CHUNK < count; chunk++) {
+            slots.add(take(in, Math.min(count - chunk * SLOTS_PER_CHUNK, SLOTS_PER_CHUNK) * SLOT));
+        }
+        rows = count;
+        int textBytes = (int) in.getLong();
+        if (textBytes > 0) {
+            ByteBuffer text = take(in, textBytes);
+            text.position(textBytes); // full: new text goes to a new chunk
+            arena.add(text);
+        }
+        arenaLive = textBytes;
+        int dictionary = in.getInt();
+        for (int i = 0; i < dictionary; i++) {
+            code(new String(Snapshot.getBytes(in), StandardCharsets.UTF_8));
+        }
+        int capacity = in.getInt();
+        indexUsed = in.getInt();
+        ids = in.getInt();
+        index = take(in, capacity);
+    }
+
+    /** The next length bytes of in as their own buffer; in moves past them. */
+    private static ByteBuffer take(ByteBuffer in, int length) {
+        ByteBuffer part = in.duplicate();
+        part.limit(part.position() + length);
+        in.position(in.position() + length);
+        return part.slice();
+    }
+
+    // --- ID index -----------------------------------------------------------
+
+    /** First row stored for the ID, or -1. */
+    int firstRow(String id) {
+        int slotAt = find(id.getBytes(StandardCharsets.UTF_8));
+        return slotAt < 0 ? -1 : index.getInt(slotAt) - 1;
+    }
+
+    /** Last (newest) row stored for the ID, or -1. */
+    int lastRow(String id) {
+        int row = firstRow(id);
+        for (int next = row; next >= 0; next = nextRow(next)) {
+            row = next;
+        }
+        return row;
+    }
+
+    /** The ID's next row after this one, or -1. */
+    int nextRow(int row) {
+        return slot(row).getInt(offset(row) + NEXT) - 1;
+    }
+
+    /** Every row stored for the ID, in row order. */
+    int[] rows(String id) {
+        int count = 0;
+        for (int r = firstRow(id); r >= 0; r = nextRow(r)) {
+            count++;
+        }
+        int[] out = new int[count];
+        int i = 0;
+        for (int r = firstRow(id); r >= 0; r = nextRow(r)) {
+            out[i++] = r;
+        }
+        return out;
+    }
+
+    /** Calls the consumer with the last row of every ID, in no particular order. */
+    void forEachLastRow(IntConsumer consumer) {
+        for (int i = 0; i < index.capacity(); i += 4) {
+            int row = index.getInt(i) - 1;
+            if (row >= 0) {
+                for (int next = nextRow(row); next >= 0; next = nextRow(next)) {
+                    row = next;
+                }
+                consumer.accept(row);
+            }
+        }
+    }
+
+    private byte[] idBytes(int row) {
+        ByteBuffer s = slot(row);
+        int at = offset(row);
+        long textAt = s.getLong(at + TEXT_OFFSET);
+        int length = s.getInt(at + TEXT_LENGTH);
+        ByteBuffer chunk = arena.get((int) (textAt >>> 32));
+        int start = (int) textAt;
+        int end = start;
+        while (end < start + length && chunk.get(end) != '|') {
+            end++;
+        }
+        byte[] id = new byte[end - start];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = chunk.get(start + i);
+        }
+        return id;
+    }
+
+    private boolean idEquals(int row, byte[] id) {
+        ByteBuffer s = slot(row);
+        int at = offset(row);
+        long textAt = s.getLong(at + TEXT_OFFSET);
+        int length = s.getInt(at + TEXT_LENGTH);
+        if (length < id.length || (length > id.length && arena.get((int) (textAt >>> 32))
+                .get((int) textAt + id.length) != '|')) {
+            return false;
+        }
+        ByteBuffer chunk = arena.get((int) (textAt >>> 32));
+        int start = (int) textAt;
+        for (int i = 0; i < id.length; i++) {
+            if (chunk.get(start + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] id) {
+        int h = 1;
+        for (byte b : id) {
+            h = 31 * h + b;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Byte position of the ID's index entry, or -1. */
+    private int find(byte[] id) {
+        int mask = index.capacity() / 4 - 1;
+        for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+            int entry = index.getInt(i * 4);
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry > 0 && idEquals(entry - 1, id)) {
+                return i * 4;
+            }
+        }
+    }
+
+    /** Adds the row to its ID's chain, keeping the chain in row order. */
+    private void link(int row) {
+        byte[] id = idBytes(row);
+        int at = find(id);
+        if (at < 0) {
+            insert(id, row);
+            return;
+        }
+        int head = index.getInt(at) - 1;
+        if (row < head) {
+            slot(row).putInt(offset(row) + NEXT, head + 1);
+            index.putInt(at, row + 1);
+            return;
+        }
+        int p = head;
+        while (nextRow(p) >= 0 && nextRow(p) < row) {
+            p = nextRow(p);
+        }
+        slot(row).putInt(offset(row) + NEXT, nextRow(p) + 1);
+        slot(p).putInt(offset(p) + NEXT, row + 1);
+    }
+
+    /** Takes the row out of its ID's chain; the ID goes when it was the last row. */
+    private void unlink(int row, byte[] id) {
+        int at = find(id);
+        if (at < 0) {
+            return;
+        }
+        int head = index.getInt(at) - 1;
+        if (head == row) {
+            int next = nextRow(row);
+            index.putInt(at, next < 0 ? REMOVED : next + 1);
+            if (next < 0) {
+                ids--;
+            }
+        } else {
+            int p = head;
+            while (nextRow(p) >= 0 && nextRow(p) != row) {
+                p = nextRow(p);
+            }
+            slot(p).putInt(offset(p) + NEXT, nextRow(row) + 1);
+        }
+        slot(row).putInt(offset(row) + NEXT, 0);
+    }
+
+    private void insert(byte[] id, int row) {
+        if ((indexUsed + 1) * 2 > index.capacity() / 4) {
+            rehash(ids * 2 + 2 > index.capacity() / 4 ? index.capacity() * 2 : index.capacity());
+        }
+        int mask = index.capacity() / 4 - 1;
+        int i = hash(id) & mask;
+        while (index.getInt(i * 4) > 0) {
+            i = (i + 1) & mask;
+        }
+        if (index.getInt(i * 4) == EMPTY) {
+            indexUsed++;
+        }
+        index.putInt(i * 4, row + 1);
+        ids++;
+    }
+
+    /** Rebuilds the index at the given byte capacity, dropping removed entries. */
+    private void rehash(int capacity) {
+        ByteBuffer old = index;
+        index = ByteBuffer.allocateDirect(capacity);
+        int mask = capacity / 4 - 1;
+        indexUsed = 0;
+        for (int j = 0; j < old.capacity(); j += 4) {
+            int entry = old.getInt(j);
+            if (entry <= 0) {
+                continue;
+            }
+            int i = hash(idBytes(entry - 1)) & mask;
+            while (index.getInt(i * 4) != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            index.putInt(i * 4, entry);
+            indexUsed++;
+        }
+    }
+}
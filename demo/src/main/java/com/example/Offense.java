@@ -0,0 +1,29 @@
+package com.example;
+
+/**
+ * One demerit offense as submitted to {@link Person#addDemeritPoints(java.util.List)}:
+ * the person's ID, the offense date as "DD-MM-YYYY" and the points (1..6).
+ */
+public final class Offense {
+    private final String personId;
+    private final String offenseDate;
+    private final int points;
+
+    public Offense(String personId, String offenseDate, int points) {
+        this.personId = personId;
+        this.offenseDate = offenseDate;
+        this.points = points;
+    }
+
+    public String getPersonId() {
+        return personId;
+    }
+
+    public String getOffenseDate() {
+        return offenseDate;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+}
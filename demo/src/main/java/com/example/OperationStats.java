@@ -0,0 +1,89 @@
+package com.example;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and I/O totals for one public operation. Filled in by
+ * {@link RegistryMetrics.Call}.
+ */
+public final class OperationStats implements OperationStatsMXBean {
+    private final RegistryMetrics.Operation operation;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder linesScanned = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    OperationStats(RegistryMetrics.Operation operation) {
+        this.operation = operation;
+    }
+
+    public RegistryMetrics.Operation operation() {
+        return operation;
+    }
+
+    void record(long nanos, long lines, long read, long written) {
+        latency.record(nanos);
+        if (lines != 0) {
+            linesScanned.add(lines);
+        }
+        if (read != 0) {
+            bytesRead.add(read);
+        }
+        if (written != 0) {
+            bytesWritten.add(written);
+        }
+    }
+
+    @Override
+    public long getCalls() {
+        return latency.count();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.mean() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.percentile(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.percentile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.max() / 1000.0;
+    }
+
+    @Override
+    public long getLinesScanned() {
+        return linesScanned.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s calls=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus"
+                + " lines=%d read=%dB written=%dB",
+                operation.label(), getCalls(), getMeanMicros(), getP50Micros(), getP99Micros(),
+                getMaxMicros(), getLinesScanned(), getBytesRead(), getBytesWritten());
+    }
+}
@@ -0,0 +1,27 @@
+package com.example;
+
+/**
+ * JMX view of one public operation's {@link OperationStats}. Latencies are in
+ * microseconds, percentiles accurate to about 25%.
+ */
+public interface OperationStatsMXBean {
+
+    long getCalls();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /** Lines read by calls of this operation, in total. */
+    long getLinesScanned();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+}
@@ -1,14 +1,25 @@
 package com.example;
 
 import java.io.*;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.format.ResolverStyle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Person class for RoadRegistry platform.
@@ -30,10 +41,26 @@ public class Person {
     private String birthDate; // "DD-MM-YYYY"
     private boolean isSuspended;
 
-    private static final String PERSONS_FILE = "persons.txt";
-    private static final String DEMERITS_FILE = "demerits.txt";
+    static final String PERSONS_FILE = "persons.txt";
+    static final String DEMERITS_FILE = "demerits.txt";
 
-    private static final DateTimeFormatter DTF = DateTimeFormatter
+    // Opened together on first use by storage(), so loading the class touches
+    // no files. Swapped only by useDataDirectory and compactDataFiles;
+    // volatile so every thread sees the swap.
+    private static volatile WriteAheadLog WAL;
+    private static volatile RegistryShards SHARDS;
+
+    // Where storage() opens them; guarded by STORAGE_LOCK.
+    private static File ROOT = RegistryShards.configuredRoot();
+    private static final Object STORAGE_LOCK = new Object();
+
+    // Optional materialized rolling totals; null until enableRollingPointsView.
+    private static volatile RollingPointsView VIEW;
+
+    // Operations on one ID are serialized on its stripe; different IDs run in parallel.
+    private static final StripedLocks LOCKS = new StripedLocks(256);
+
+    static final DateTimeFormatter DTF = DateTimeFormatter
             .ofPattern("dd-MM-uuuu")
             .withResolverStyle(ResolverStyle.STRICT);
 
@@ -50,6 +77,18 @@ public class Person {
         return id;
     }
 
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
     public String getBirthDate() {
         return birthDate;
     }
@@ -63,47 +102,105 @@ public class Person {
      * Returns true if added successfully, false otherwise.
      */
     public static boolean addPerson(Person person) {
-        // 1) Validate ID pattern
-        String id = person.id;
-        Pattern idPattern = Pattern.compile(
-                "^(?=.{10}$)(?=.*[^A-Za-z0-9].*[^A-Za-z0-9])[2-9]{2}.{6}[A-Z]{2}$");
-        Matcher idMatcher = idPattern.matcher(id);
-        if (!idMatcher.matches()) {
-            return false;
-        }
+        try (RegistryMetrics.Call call = RegistryMetrics.begin(RegistryMetrics.Operation.ADD_PERSON)) {
+            // 1..3) Validate ID pattern, address (5 parts, "Victoria" as state) and
+            // birthDate format; see PersonValidator for the exact rules
+            if (!validatePersonFormat(person)) {
+                return false;
+            }
 
-        // 2) Validate address: must have exactly 5 subfields when split on '|',
-        // and the 4th subfield (index 3) must be "Victoria".
-        String[] addrParts = person.address.split("\\|");
-        if (addrParts.length != 5 || !addrParts[3].equals("Victoria")) {
-            return false;
+            // 4) Append to persons.txt in the form:
+            // id|firstName|lastName|<address-string>|birthDate|false
+            // (note: address-string already contains internal '|' chars)
+            try {
+                // We do NOT re-split address here; we store it verbatim.
+                String line = String.join("|",
+                        person.id,
+                        person.firstName,
+                        person.lastName,
+                        person.address,
+                        person.birthDate,
+                        "false");
+                LOCKS.lock(person.id);
+                try {
+                    storage().registry(person.id).append(line);
+                    RollingPointsView view = VIEW;
+                    if (view != null) {
+                        view.onPersonAdded(person.id, person.birthDate, person.address);
+                    }
+                } finally {
+                    LOCKS.unlock(person.id);
+                }
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
         }
+    }
 
-        // 3) Validate birthDate format
-        try {
-            LocalDate.parse(person.birthDate, DTF);
-        } catch (DateTimeParseException ex) {
-            return false;
+    /**
+     * Adds many persons at once. Each record gets the same accept/reject
+     * outcome addPerson would give it, but validation runs in parallel and all
+     * accepted rows are appended to persons.txt in input order in a single
+     * buffered write. If that write fails, every record is reported rejected.
+     */
+    public static ImportReport addPersons(Stream<Person> persons) {
+        return addPersons(persons.collect(Collectors.toList()));
+    }
+
+    /**
+     * Same as {@link #addPersons(Stream)} for an Iterable source.
+     */
+    public static ImportReport addPersons(Iterable<Person> persons) {
+        List<Person> batch = new ArrayList<>();
+        for (Person p : persons) {
+            batch.add(p);
         }
+        return addPersons(batch);
+    }
 
-        // 4) Append to persons.txt in the form:
-        // id|firstName|lastName|<address-string>|birthDate|false
-        // (note: address-string already contains internal '|' chars)
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(PERSONS_FILE, true))) {
-            // We do NOT re-split address here; we store it verbatim.
-            String line = String.join("|",
-                    person.id,
-                    person.firstName,
-                    person.lastName,
-                    person.address,
-                    person.birthDate,
-                    "false");
-            writer.write(line);
-            writer.newLine();
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+    private static ImportReport addPersons(List<Person> batch) {
+        try (RegistryMetrics.Call call = RegistryMetrics.begin(RegistryMetrics.Operation.ADD_PERSONS)) {
+            // 1) Validate every record on the common pool; each slot is written by one task only
+            boolean[] accepted = new boolean[batch.size()];
+            IntStream.range(0, batch.size()).parallel()
+                    .forEach(i -> accepted[i] = validatePersonFormat(batch.get(i)));
+
+            // 2) Build the rows for accepted records, keeping input order
+            List<String> rows = new ArrayList<>();
+            for (int i = 0; i < accepted.length; i++) {
+                if (accepted[i]) {
+                    Person person = batch.get(i);
+                    rows.add(String.join("|",
+                            person.id,
+                            person.firstName,
+                            person.lastName,
+                            person.address,
+                            person.birthDate,
+                            "false"));
+                }
+            }
+
+            // 3) One buffered append for the whole batch
+            LOCKS.lockAll();
+            try {
+                storage().appendPersons(rows);
+                RollingPointsView view = VIEW;
+                if (view != null) {
+                    for (int i = 0; i < accepted.length; i++) {
+                        if (accepted[i]) {
+                            view.onPersonAdded(batch.get(i).id, batch.get(i).birthDate, batch.get(i).address);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                Arrays.fill(accepted, false);
+            } finally {
+                LOCKS.unlockAll();
+            }
+            return new ImportReport(batch, accepted);
         }
     }
 
@@ -114,70 +211,60 @@ public class Person {
      * Returns "Success" if added, "Failed" otherwise.
      */
     public static String addDemeritPoints(String id, String offenseDate, int points) {
-        // 1) Parse and validate offenseDate
-        LocalDate offense;
-        try {
-            offense = LocalDate.parse(offenseDate, DTF);
-        } catch (DateTimeParseException ex) {
-            return "Failed";
-        }
-
-        // 2) Validate points range 1..6
-        if (points < 1 || points > 6) {
-            return "Failed";
-        }
+        try (RegistryMetrics.Call call = RegistryMetrics.begin(RegistryMetrics.Operation.ADD_DEMERIT_POINTS)) {
+            // 1) Parse and validate offenseDate
+            LocalDate offense;
+            try {
+                offense = LocalDate.parse(offenseDate, DTF);
+            } catch (DateTimeParseException ex) {
+                RegistryMetrics.offenseRejected();
+                return "Failed";
+            }
 
-        // 3) Look up the person in persons.txt to fetch birthDate and current
-        // suspension state
-        LocalDate birth = null;
-        boolean currentlySuspended = false;
-        boolean found = false;
+            // 2) Validate points range 1..6
+            if (points < 1 || points > 6) {
+                RegistryMetrics.offenseRejected();
+                return "Failed";
+            }
 
-        try (BufferedReader personReader = new BufferedReader(new FileReader(PERSONS_FILE))) {
-            String line;
-            while ((line = personReader.readLine()) != null) {
-                // Split into tokens. Because address has internal '|', we do a full split, then
-                // know the last two tokens are birthDate and suspended.
-                String[] fullParts = line.split("\\|");
-                int n = fullParts.length;
-                if (fullParts[0].equals(id)) {
-                    // birthDate is the second‐to‐last token:
-                    birth = LocalDate.parse(fullParts[n - 2], DTF);
-                    currentlySuspended = Boolean.parseBoolean(fullParts[n - 1]);
-                    found = true;
-                    break;
-                }
+            // 3..8 read the current total and then write, so they must not interleave
+            // with another call for the same ID
+            LOCKS.lock(id);
+            try {
+                return recordOffense(id, offenseDate, offense, points);
+            } finally {
+                LOCKS.unlock(id);
             }
+        }
+    }
+
+    private static String recordOffense(String id, String offenseDate, LocalDate offense, int points) {
+        // 3) Look up the person in the persons.txt index to fetch birthDate and
+        // current suspension state (the newest row for the ID wins)
+        PersonRecord record;
+        try {
+            record = storage().registry(id).find(id);
         } catch (IOException ioe) {
             ioe.printStackTrace();
             return "Failed";
         }
 
-        if (!found) {
+        if (record == null) {
+            RegistryMetrics.offenseRejected();
             return "Failed"; // no person with that ID
         }
+        LocalDate birth = LocalDate.parse(record.birthDate, DTF);
+        boolean currentlySuspended = record.suspended;
 
         // 4) Compute age at offense date
         int age = offense.getYear() - birth.getYear();
 
-        // 5) Sum all points in the last 2 years (inclusive of this offense)
+        // 5) Sum all points in the last 2 years (inclusive of this offense). The
+        // per-person timeline answers this with a binary search over its dates.
         LocalDate cutoff = offense.minusYears(2);
         int totalPoints = points; // start with the new offense's points
-        try (BufferedReader demReader = new BufferedReader(new FileReader(DEMERITS_FILE))) {
-            String dline;
-            while ((dline = demReader.readLine()) != null) {
-                String[] dparts = dline.split("\\|");
-                // Format in demerits.txt is: id|offenseDate|points
-                if (!dparts[0].equals(id)) {
-                    continue;
-                }
-                LocalDate dDate = LocalDate.parse(dparts[1], DTF);
-                int pts = Integer.parseInt(dparts[2]);
-                // If dDate is in [cutoff .. offense], include it
-                if ((!dDate.isBefore(cutoff)) && (!dDate.isAfter(offense))) {
-                    totalPoints += pts;
-                }
-            }
+        try {
+            totalPoints += storage().demerits(id).pointsBetween(id, cutoff.toEpochDay(), offense.toEpochDay());
         } catch (IOException ioe) {
             ioe.printStackTrace();
             return "Failed";
@@ -188,14 +275,16 @@ public class Person {
         boolean willSuspend = totalPoints > threshold;
 
         // 7) Append this offense record to demerits.txt
-        try (BufferedWriter demWriter = new BufferedWriter(new FileWriter(DEMERITS_FILE, true))) {
-            String demLine = String.join("|", id, offenseDate, Integer.toString(points));
-            demWriter.write(demLine);
-            demWriter.newLine();
+        try {
+            storage().demerits(id).append(id, offenseDate, offense.toEpochDay(), points);
         } catch (IOException ioe) {
             ioe.printStackTrace();
             return "Failed";
         }
+        RollingPointsView view = VIEW;
+        if (view != null) {
+            view.onOffense(id, offense.toEpochDay(), points);
+        }
 
         // 8) If suspension status flips from false to true, update persons.txt
         if (willSuspend && !currentlySuspended) {
@@ -211,41 +300,201 @@ public class Person {
     }
 
     /**
-     * Helper to flip the suspended flag in persons.txt for a given ID.
+     * Adds a batch of offenses, e.g. a feed from camera or roadside systems.
+     * Returns one "Success"/"Failed" per offense, in input order, exactly as if
+     * addDemeritPoints had been called for each offense in turn.
+     *
+     * Offenses are grouped by person ID; each person's offenses are evaluated in
+     * input order, and different persons are evaluated in parallel on the
+     * fork/join pool. All accepted offenses are then appended to demerits.txt in
+     * one pass and every resulting suspension is recorded in one batch.
      */
-    private static void updateSuspensionStatus(String id, boolean suspend) throws IOException {
-        File file = new File(PERSONS_FILE);
-        if (!file.exists()) {
-            return;
+    public static List<String> addDemeritPoints(List<Offense> offenses) {
+        try (RegistryMetrics.Call call = RegistryMetrics.begin(RegistryMetrics.Operation.ADD_DEMERIT_POINTS_BATCH)) {
+            int n = offenses.size();
+            String[] results = new String[n];
+            long[] days = new long[n];
+            Arrays.fill(results, "Failed");
+
+            // 1) Group offense positions by person ID, keeping input order within each group
+            Map<String, List<Integer>> byPerson = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                byPerson.computeIfAbsent(offenses.get(i).getPersonId(), k -> new ArrayList<>()).add(i);
+            }
+
+            // The batch reads and writes many IDs at once, so it holds every stripe
+            LOCKS.lockAll();
+            try {
+                return addDemeritPointsLocked(offenses, byPerson, results, days);
+            } finally {
+                LOCKS.unlockAll();
+            }
         }
+    }
 
-        List<String> allLines = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] fullParts = line.split("\\|");
-                int n = fullParts.length;
-                if (fullParts[0].equals(id)) {
-                    // Re‐construct the last token (suspended) to "true"/"false"
-                    fullParts[n - 1] = Boolean.toString(suspend);
-                    // Re‐join everything with '|'
-                    StringBuilder sb = new StringBuilder(fullParts[0]);
-                    for (int i = 1; i < n; i++) {
-                        sb.append("|").append(fullParts[i]);
-                    }
-                    allLines.add(sb.toString());
-                } else {
-                    allLines.add(line);
+    private static List<String> addDemeritPointsLocked(List<Offense> offenses,
+            Map<String, List<Integer>> byPerson, String[] results, long[] days) {
+        int n = offenses.size();
+
+        // 2) Evaluate each person's window and threshold, persons in parallel.
+        // flips maps a newly suspended ID to the offense that tipped it over.
+        List<List<Integer>> groups = new ArrayList<>(byPerson.values());
+        Map<String, Integer> flips = new ConcurrentHashMap<>();
+        try {
+            ForkJoinPool.commonPool().invoke(
+                    new EvaluateOffenses(offenses, groups, 0, groups.size(), results, days, flips));
+        } catch (UncheckedIOException ioe) {
+            ioe.printStackTrace();
+            return failedResults(n);
+        }
+
+        // 3) Append every accepted offense to demerits.txt in input order
+        List<Offense> accepted = new ArrayList<>();
+        long[] acceptedDays = new long[n];
+        for (int i = 0; i < n; i++) {
+            if ("Success".equals(results[i])) {
+                acceptedDays[accepted.size()] = days[i];
+                accepted.add(offenses.get(i));
+            }
+        }
+        try {
+            storage().appendOffenses(accepted, acceptedDays);
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return failedResults(n);
+        }
+        RollingPointsView view = VIEW;
+        if (view != null) {
+            for (int i = 0; i < accepted.size(); i++) {
+                view.onOffense(accepted.get(i).getPersonId(), acceptedDays[i], accepted.get(i).getPoints());
+            }
+        }
+
+        // 4) Record all false -> true suspension flips together
+        try {
+            storage().setSuspended(flips.keySet(), true);
+            if (view != null) {
+                for (String id : flips.keySet()) {
+                    view.onSuspensionWritten(id, true);
+                }
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            // One at a time, only the offense that triggered the flip would have failed.
+            for (int i : flips.values()) {
+                results[i] = "Failed";
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static List<String> failedResults(int n) {
+        String[] failed = new String[n];
+        Arrays.fill(failed, "Failed");
+        return Arrays.asList(failed);
+    }
+
+    /**
+     * Fork/join task evaluating groups [from, to) of a batch. Each group holds
+     * the positions of one person's offenses and writes only its own slots of
+     * results/days, so groups never contend with each other.
+     */
+    private static final class EvaluateOffenses extends RecursiveAction {
+        private static final int GROUPS_PER_TASK = 64;
+
+        private final List<Offense> offenses;
+        private final List<List<Integer>> groups;
+        private final int from;
+        private final int to;
+        private final String[] results;
+        private final long[] days;
+        private final Map<String, Integer> flips;
+
+        EvaluateOffenses(List<Offense> offenses, List<List<Integer>> groups, int from, int to,
+                String[] results, long[] days, Map<String, Integer> flips) {
+            this.offenses = offenses;
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+            this.days = days;
+            this.flips = flips;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GROUPS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new EvaluateOffenses(offenses, groups, from, mid, results, days, flips),
+                        new EvaluateOffenses(offenses, groups, mid, to, results, days, flips));
+                return;
+            }
+            for (int g = from; g < to; g++) {
+                try {
+                    evaluate(groups.get(g));
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
                 }
             }
         }
 
-        // Overwrite the file with updated lines
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, false))) {
-            for (String out : allLines) {
-                writer.write(out);
-                writer.newLine();
+        private void evaluate(List<Integer> group) throws IOException {
+            String id = offenses.get(group.get(0)).getPersonId();
+            PersonRecord record = storage().registry(id).find(id);
+            if (record == null) {
+                for (int i = 0; i < group.size(); i++) {
+                    RegistryMetrics.offenseRejected();
+                }
+                return; // no person with that ID: every offense stays "Failed"
             }
+            LocalDate birth = LocalDate.parse(record.birthDate, DTF);
+            boolean suspended = record.suspended;
+            // Offenses accepted earlier in this batch, not yet in demerits.txt
+            DemeritTimeline pending = new DemeritTimeline();
+
+            for (int i : group) {
+                Offense o = offenses.get(i);
+                LocalDate offense;
+                try {
+                    offense = LocalDate.parse(o.getOffenseDate(), DTF);
+                } catch (DateTimeParseException ex) {
+                    RegistryMetrics.offenseRejected();
+                    continue;
+                }
+                if (o.getPoints() < 1 || o.getPoints() > 6) {
+                    RegistryMetrics.offenseRejected();
+                    continue;
+                }
+
+                int age = offense.getYear() - birth.getYear();
+                long cutoff = offense.minusYears(2).toEpochDay();
+                long day = offense.toEpochDay();
+                int totalPoints = o.getPoints()
+                        + storage().demerits(id).pointsBetween(id, cutoff, day)
+                        + pending.pointsBetween((int) cutoff, (int) day);
+                int threshold = (age < 21) ? 6 : 12;
+
+                pending.add((int) day, o.getPoints());
+                days[i] = day;
+                results[i] = "Success";
+                if (totalPoints > threshold && !suspended) {
+                    suspended = true;
+                    flips.put(id, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper to flip the suspended flag in persons.txt for a given ID.
+     * The flip is recorded in the registry's change log rather than rewriting
+     * the whole file; see PersonRegistry.
+     */
+    private static void updateSuspensionStatus(String id, boolean suspend) throws IOException {
+        storage().registry(id).setSuspended(id, suspend);
+        RollingPointsView view = VIEW;
+        if (view != null) {
+            view.onSuspensionWritten(id, suspend);
         }
     }
 
@@ -270,109 +519,105 @@ public class Person {
      * Returns true if update succeeds, false if any rule is violated or I/O fails.
      */
     public static boolean updatePersonalDetails(Person updatedPerson) {
+        try (RegistryMetrics.Call call = RegistryMetrics.begin(RegistryMetrics.Operation.UPDATE_PERSONAL_DETAILS)) {
+            LOCKS.lock(updatedPerson.id);
+            try {
+                return updatePersonalDetailsLocked(updatedPerson);
+            } finally {
+                LOCKS.unlock(updatedPerson.id);
+            }
+        }
+    }
+
+    private static boolean updatePersonalDetailsLocked(Person updatedPerson) {
         String targetId = updatedPerson.id;
         String targetBirth = updatedPerson.birthDate;
         boolean birthdayChanged = false;
 
         try {
-            File file = new File(PERSONS_FILE);
-            if (!file.exists()) {
+            // Only the rows for this ID are needed; the registry hands them over in
+            // file order without scanning everybody else.
+            List<String> rows = storage().registry(targetId).linesFor(targetId);
+            if (rows.isEmpty()) {
                 return false;
             }
 
-            List<String> allLines = new ArrayList<>();
-            boolean found = false;
-
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    String[] fullParts = line.split("\\|");
-                    int n = fullParts.length;
-
-                    if (fullParts[0].equals(targetId)) {
-                        found = true;
-
-                        // Reconstruct original birthDate and original address
-                        String origBirth = fullParts[n - 2];
-                        // address is everything between index 3 .. n-3, joined with '|'
-                        StringBuilder origAddrSb = new StringBuilder(fullParts[3]);
-                        for (int i = 4; i <= n - 3; i++) {
-                            origAddrSb.append("|").append(fullParts[i]);
-                        }
-                        String origAddress = origAddrSb.toString();
-
-                        String origFirst = fullParts[1];
-                        String origLast = fullParts[2];
-                        int origFirstDigit = Character.getNumericValue(origIdFirstDigit(fullParts[0]));
-                        int yearNow = LocalDate.now().getYear();
-                        int yearBirth = LocalDate.parse(origBirth, DTF).getYear();
-                        int age = yearNow - yearBirth;
-
-                        // RULE A: if under 18, address cannot change
-                        if (age < 18 && !origAddress.equals(updatedPerson.address)) {
-                            return false;
-                        }
+            List<String> updatedLines = new ArrayList<>();
+            for (String line : rows) {
+                String[] fullParts = line.split("\\|");
+                int n = fullParts.length;
 
-                        // RULE B: if birthdate changed, NO other field can change
-                        if (!origBirth.equals(updatedPerson.birthDate)) {
-                            birthdayChanged = true;
-                        }
-                        if (birthdayChanged) {
-                            if (!fullParts[0].equals(updatedPerson.id) ||
-                                    !origFirst.equals(updatedPerson.firstName) ||
-                                    !origLast.equals(updatedPerson.lastName) ||
-                                    !origAddress.equals(updatedPerson.address)) {
-                                return false;
-                            }
-                        }
+                // Reconstruct original birthDate and original address
+                String origBirth = fullParts[n - 2];
+                // address is everything between index 3 .. n-3, joined with '|'
+                StringBuilder origAddrSb = new StringBuilder(fullParts[3]);
+                for (int i = 4; i <= n - 3; i++) {
+                    origAddrSb.append("|").append(fullParts[i]);
+                }
+                String origAddress = origAddrSb.toString();
+
+                String origFirst = fullParts[1];
+                String origLast = fullParts[2];
+                int origFirstDigit = Character.getNumericValue(origIdFirstDigit(fullParts[0]));
+                int yearNow = LocalDate.now().getYear();
+                int yearBirth = LocalDate.parse(origBirth, DTF).getYear();
+                int age = yearNow - yearBirth;
+
+                // RULE A: if under 18, address cannot change
+                if (age < 18 && !origAddress.equals(updatedPerson.address)) {
+                    return false;
+                }
 
-                        // RULE C: if original first digit of ID is even, cannot change ID
-                        if ((origFirstDigit % 2 == 0) && !fullParts[0].equals(updatedPerson.id)) {
-                            return false;
-                        }
+                // RULE B: if birthdate changed, NO other field can change
+                if (!origBirth.equals(updatedPerson.birthDate)) {
+                    birthdayChanged = true;
+                }
+                if (birthdayChanged) {
+                    if (!fullParts[0].equals(updatedPerson.id) ||
+                            !origFirst.equals(updatedPerson.firstName) ||
+                            !origLast.equals(updatedPerson.lastName) ||
+                            !origAddress.equals(updatedPerson.address)) {
+                        return false;
+                    }
+                }
 
-                        // Validate updated fields exactly as in addPerson (except suspended flag)
-                        // (We only want to validate id/firstname/lastname/address/birthdate format,
-                        // not actually append a new line—so do a “fake” Person and run the same
-                        // validation.)
-                        Person validator = new Person(
-                                updatedPerson.id,
-                                updatedPerson.firstName,
-                                updatedPerson.lastName,
-                                updatedPerson.address,
-                                updatedPerson.birthDate);
-                        // If validation fails, do NOT proceed.
-                        if (!validatePersonFormat(validator)) {
-                            return false;
-                        }
+                // RULE C: if original first digit of ID is even, cannot change ID
+                if ((origFirstDigit % 2 == 0) && !fullParts[0].equals(updatedPerson.id)) {
+                    return false;
+                }
 
-                        // Rebuild this line with updated fields, preserving the original suspended
-                        // flag:
-                        String suspendedState = fullParts[n - 1];
-                        StringBuilder newLineSb = new StringBuilder(updatedPerson.id);
-                        newLineSb.append("|").append(updatedPerson.firstName)
-                                .append("|").append(updatedPerson.lastName)
-                                .append("|").append(updatedPerson.address)
-                                .append("|").append(updatedPerson.birthDate)
-                                .append("|").append(suspendedState);
-                        allLines.add(newLineSb.toString());
-                    } else {
-                        // Keep everybody else unchanged
-                        allLines.add(line);
-                    }
+                // Validate updated fields exactly as in addPerson (except suspended flag)
+                // (We only want to validate id/firstname/lastname/address/birthdate format,
+                // not actually append a new line—so do a “fake” Person and run the same
+                // validation.)
+                Person validator = new Person(
+                        updatedPerson.id,
+                        updatedPerson.firstName,
+                        updatedPerson.lastName,
+                        updatedPerson.address,
+                        updatedPerson.birthDate);
+                // If validation fails, do NOT proceed.
+                if (!validatePersonFormat(validator)) {
+                    return false;
                 }
-            }
 
-            if (!found) {
-                return false;
+                // Rebuild this line with updated fields, preserving the original suspended
+                // flag:
+                String suspendedState = fullParts[n - 1];
+                StringBuilder newLineSb = new StringBuilder(updatedPerson.id);
+                newLineSb.append("|").append(updatedPerson.firstName)
+                        .append("|").append(updatedPerson.lastName)
+                        .append("|").append(updatedPerson.address)
+                        .append("|").append(updatedPerson.birthDate)
+                        .append("|").append(suspendedState);
+                updatedLines.add(newLineSb.toString());
             }
 
-            // Overwrite the file with updated lines
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, false))) {
-                for (String outLine : allLines) {
-                    writer.write(outLine);
-                    writer.newLine();
-                }
+            // Swap the rows in the index and overwrite the file with updated lines
+            storage().registry(targetId).replace(targetId, updatedLines);
+            RollingPointsView view = VIEW;
+            if (view != null) {
+                view.onDetailsChanged(targetId, updatedPerson.birthDate, updatedPerson.address);
             }
             return true;
         } catch (IOException e) {
@@ -385,31 +630,265 @@ public class Person {
      * Helper to validate a Person’s fields without writing to file.
      * Returns true if id/address/birthDate all pass the same checks as addPerson.
      */
-    private static boolean validatePersonFormat(Person person) {
-        // 1) ID pattern
-        Pattern idPattern = Pattern.compile(
-                "^(?=.{10}$)(?=.*[^A-Za-z0-9].*[^A-Za-z0-9])[2-9]{2}.{6}[A-Z]{2}$");
-        Matcher idMatcher = idPattern.matcher(person.id);
-        if (!idMatcher.matches()) {
+    static boolean validatePersonFormat(Person person) {
+        PersonValidator.Reason reason = PersonValidator.validate(person);
+        if (!reason.isValid()) {
+            RegistryMetrics.rejected(reason);
+        }
+        return reason.isValid();
+    }
+
+    /**
+     * Builds the rolling points view over the current registry, as of the
+     * clock's date, and reconciles stored suspension flags with it. From then
+     * on every write here keeps the view up to date; call
+     * {@link RollingPointsView#start} to let it expire points as days pass.
+     */
+    public static RollingPointsView enableRollingPointsView(Clock clock) throws IOException {
+        RollingPointsView view = new RollingPointsView(clock, (id, suspend) -> {
+            LOCKS.lock(id);
+            try {
+                RollingPointsView current = VIEW;
+                if (current == null || current.wouldSuspend(id) != suspend) {
+                    return false;
+                }
+                storage().registry(id).setSuspended(id, suspend);
+                return true;
+            } finally {
+                LOCKS.unlock(id);
+            }
+        });
+        LOCKS.lockAll();
+        try {
+            view.rebuild(storage());
+            VIEW = view;
+        } finally {
+            LOCKS.unlockAll();
+        }
+        view.reconcile();
+        return view;
+    }
+
+    /**
+     * Points the person has collected over the two years up to today. O(1)
+     * when the rolling points view is enabled, otherwise one index lookup.
+     */
+    public static int currentDemeritPoints(String id) {
+        RollingPointsView view = VIEW;
+        if (view != null) {
+            return view.currentPoints(id);
+        }
+        LocalDate today = LocalDate.now();
+        try {
+            return storage().demerits(id).pointsBetween(id, today.minusYears(2).toEpochDay(), today.toEpochDay());
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Stored suspended flag for the ID (the newest row wins, as everywhere else).
+     * False for unknown IDs.
+     */
+    public static boolean isSuspended(String id) {
+        RollingPointsView view = VIEW;
+        if (view != null) {
+            return view.isSuspended(id);
+        }
+        try {
+            PersonRecord record = storage().registry(id).find(id);
+            return record != null && record.suspended;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
             return false;
         }
+    }
 
-        // 2) Address must split into 5 parts and part[3] = "Victoria"
-        String[] addrParts = person.address.split("\\|");
-        if (addrParts.length != 5 || !addrParts[3].equals("Victoria")) {
+    /**
+     * Same as {@link #compactDataFiles(boolean)} keeping every demerit line,
+     * so no point total changes.
+     */
+    public static boolean compactDataFiles() {
+        return compactDataFiles(false);
+    }
+
+    /**
+     * Rewrites persons.txt and demerits.txt sorted by ID without duplicate
+     * person rows, persons.txt with a sparse index for point lookups, and
+     * reloads from the new files. With dropRepeatedDemerits, a demerit line
+     * with the same ID, day and points as an earlier one is dropped too; that
+     * also merges two real same-day offenses with equal points, lowering the
+     * person's total (see {@link SortedCompactor}). Shards are compacted in
+     * parallel. Writers wait while it runs. Returns false if the files could
+     * not be rewritten.
+     */
+    public static synchronized boolean compactDataFiles(boolean dropRepeatedDemerits) {
+        RollingPointsView view;
+        LOCKS.lockAll();
+        try {
+            RegistryShards shards = storage();
+            WriteAheadLog wal = WAL;
+            shards.forEachShard(i -> {
+                SortedCompactor.compactPersons(shards.registry(i), wal);
+                DemeritStore store = shards.demerits(i).store();
+                if (store instanceof TextDemeritStore && ((TextDemeritStore) store).file().exists()) {
+                    SortedCompactor.compactDemerits(((TextDemeritStore) store).file(), wal,
+                            dropRepeatedDemerits);
+                }
+            });
+            // Row numbers and duplicates changed under every index; start over
+            SHARDS = RegistryShards.open(shards.root(), wal);
+            view = VIEW;
+            if (view != null) {
+                view.rebuild(SHARDS);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
             return false;
+        } finally {
+            LOCKS.unlockAll();
         }
+        if (view != null) {
+            view.reconcile();
+        }
+        return true;
+    }
 
-        // 3) birthDate parse
+    /**
+     * Writes the month-end CSV reports (points by age band, offenses by month,
+     * suspension rate by city; see {@link ReportEngine}) into dir. Writers
+     * wait while the data is read. Returns false if a file could not be read
+     * or written.
+     */
+    public static synchronized boolean writeMonthEndReports(File dir) {
+        ReportAggregate totals;
+        LOCKS.lockAll();
+        try {
+            RegistryShards shards = storage();
+            totals = ReportEngine.aggregate(shards, ReportEngine.slicesPerShard());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            LOCKS.unlockAll();
+        }
         try {
-            LocalDate.parse(person.birthDate, DTF);
-        } catch (DateTimeParseException ex) {
+            ReportEngine.write(totals, dir);
+        } catch (IOException e) {
+            e.printStackTrace();
             return false;
         }
+        return true;
+    }
 
+    /**
+     * Writes a binary snapshot of every shard's person rows and demerit
+     * timelines next to their files (see {@link Snapshot}). A process that
+     * starts later maps the snapshots and only parses what was written after
+     * them. Shards are written in parallel; writers to a shard wait while its
+     * snapshot is written. Returns false if a snapshot could not be written.
+     */
+    public static synchronized boolean writeSnapshots() {
+        RegistryShards shards = storage();
+        try {
+            shards.forEachShard(i -> {
+                shards.registry(i).writeSnapshot();
+                shards.demerits(i).writeSnapshot();
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
         return true;
     }
 
+    /**
+     * Runs {@link #writeSnapshots()} on the scheduler every period, first
+     * after one period. Cancel the returned future to stop.
+     */
+    public static ScheduledFuture<?> scheduleSnapshots(ScheduledExecutorService scheduler, long period,
+            TimeUnit unit) {
+        return scheduler.scheduleAtFixedRate(Person::writeSnapshots, period, period, unit);
+    }
+
+    /**
+     * Points the static API at the storage root in another directory (null
+     * means the configured root, see {@link RegistryShards#ROOT_PROPERTY}, or
+     * else the working directory). Meant for tests and tools that must not
+     * touch the real files. Nothing there is opened until the API next needs it.
+     */
+    static synchronized void useDataDirectory(File dir) {
+        File root = dir != null ? dir : RegistryShards.configuredRoot();
+        LOCKS.lockAll();
+        try {
+            RollingPointsView view = VIEW;
+            if (view != null) {
+                view.stop();
+                VIEW = null;
+            }
+            synchronized (STORAGE_LOCK) {
+                if (WAL != null) {
+                    try {
+                        WAL.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                WAL = null;
+                SHARDS = null;
+                ROOT = root;
+            }
+        } finally {
+            LOCKS.unlockAll();
+        }
+    }
+
+    /**
+     * The shards of the current root, opening them and the write-ahead log on
+     * first use (which replays anything a crash left in the log, before any
+     * data file is read).
+     */
+    private static RegistryShards storage() {
+        RegistryShards shards = SHARDS;
+        if (shards != null) {
+            return shards;
+        }
+        synchronized (STORAGE_LOCK) {
+            if (SHARDS == null) {
+                WAL = openLog(ROOT);
+                SHARDS = openShards(ROOT);
+            }
+            return SHARDS;
+        }
+    }
+
+    /**
+     * Opens the write-ahead log for a data directory, replaying anything a
+     * crash left in it. If that fails the files are used without a log, as
+     * they were before it existed.
+     */
+    private static WriteAheadLog openLog(File dir) {
+        try {
+            return WriteAheadLog.open(dir);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return WriteAheadLog.unlogged();
+        }
+    }
+
+    /**
+     * Opens the shards under a storage root. Unlike the log there is no safe
+     * fallback (a guessed layout would hide data), so a bad manifest is fatal.
+     */
+    private static RegistryShards openShards(File root) {
+        try {
+            return RegistryShards.open(root, WAL);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Returns the first character of an ID as a digit (e.g. '2' → 2).
      * We assume ID always begins with a digit here (per your regex).
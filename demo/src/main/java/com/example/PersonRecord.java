@@ -0,0 +1,60 @@
+package com.example;
+
+/**
+ * One parsed row of persons.txt.
+ *
+ * Rows look like "id|firstName|lastName|<address>|birthDate|suspended" where
+ * the address itself contains pipes, so (same as in Person) the last two
+ * tokens are birthDate and suspended and everything from index 3 up to them is
+ * joined back together as the address.
+ */
+final class PersonRecord {
+    final String id;
+    final String firstName;
+    final String lastName;
+    final String address;
+    final String birthDate;
+    final boolean suspended;
+
+    PersonRecord(String id, String firstName, String lastName, String address,
+            String birthDate, boolean suspended) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.address = address;
+        this.birthDate = birthDate;
+        this.suspended = suspended;
+    }
+
+    /**
+     * Parses a persons.txt line. Returns null if the line does not have enough
+     * tokens to be a person row.
+     */
+    static PersonRecord parse(String line) {
+        String[] fullParts = line.split("\\|");
+        int n = fullParts.length;
+        if (n < 6) {
+            return null;
+        }
+        StringBuilder addr = new StringBuilder(fullParts[3]);
+        for (int i = 4; i <= n - 3; i++) {
+            addr.append("|").append(fullParts[i]);
+        }
+        return new PersonRecord(fullParts[0], fullParts[1], fullParts[2], addr.toString(),
+                fullParts[n - 2], Boolean.parseBoolean(fullParts[n - 1]));
+    }
+
+    /**
+     * Returns the key a line is indexed under: its first '|'-delimited token,
+     * which is exactly what line.split("\\|")[0] gives.
+     */
+    static String keyOf(String line) {
+        int bar = line.indexOf('|');
+        return bar < 0 ? line : line.substring(0, bar);
+    }
+
+    String toLine() {
+        return String.join("|", id, firstName, lastName, address, birthDate,
+                Boolean.toString(suspended));
+    }
+}
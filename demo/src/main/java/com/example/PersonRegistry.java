@@ -0,0 +1,544 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * In-memory index over persons.txt.
+ *
+ * The file is read once into an {@link OffHeapPersonStore}: rows in file
+ * order in direct memory, with an off-heap hash index from ID to that ID's
+ * rows. Lookups are then a hash probe instead of a scan, and a large registry
+ * costs the heap next to nothing. Records handed out by {@link #find(String)}
+ * are kept in a bounded LRU cache ({@link #CACHE_PROPERTY} entries), so hot
+ * IDs are not decoded again on every call. The file can contain several rows for the same ID (see
+ * the sample data); {@link #find(String)} returns the last one, the newest
+ * row winning as it does after a {@link SortedCompactor} run, and rewrites
+ * touch every matching row.
+ *
+ * New persons are appended to persons.txt as before. Changes to existing rows
+ * (suspension flips, detail edits) are not written into persons.txt straight
+ * away: each one is appended to a change log next to it ("persons.txt.log") as
+ *
+ *   R|<row number>|<full new line>
+ *
+ * and replayed over the base file on load, later records winning. Because a
+ * record carries the whole line, replaying one twice is harmless. Once the log
+ * grows past {@link #COMPACT_MAX_LOG_BYTES} or {@link #COMPACT_RATIO} of the
+ * row count, a background compaction folds it back into persons.txt.
+ *
+ * Both files are only ever appended to through a {@link WriteAheadLog}, and a
+ * write method returns once the log says the write is durable; the registry's
+ * own lock is not held while waiting, so concurrent writers share a commit.
+ * Compaction forces its new files and swaps them in with a rename, so an
+ * interrupted compaction leaves the old files as they were.
+ *
+ * If either file is changed by someone else (length or timestamp no longer
+ * match what we last saw) the index is rebuilt on the next call.
+ *
+ * {@link #writeSnapshot()} saves the loaded rows to a {@link Snapshot}; as
+ * long as both files still match its {@link PrefixMark}s, a load maps it,
+ * uses the mapped rows as they are and then reads only the rows and change
+ * records written after it.
+ *
+ * After a {@link SortedCompactor} run there is a {@link SparseIndex} next to
+ * the file. Until something needs the whole file loaded, and as long as the
+ * change log is empty, {@link #find(String)} and {@link #linesFor(String)}
+ * seek through that index instead of reading everything. Any write loads the
+ * file, so from then on the in-memory index answers.
+ */
+final class PersonRegistry {
+    private static final String NEWLINE = System.lineSeparator();
+
+    /** Compact once the log is this large, whatever the registry size. */
+    static final long COMPACT_MAX_LOG_BYTES = 4L * 1024 * 1024;
+    /** ...or once it holds this many records per base row. */
+    static final double COMPACT_RATIO = 0.25;
+    /** Never bother compacting logs shorter than this. */
+    static final int COMPACT_MIN_RECORDS = 64;
+    /** System property: most records kept in the find cache (0 turns it off). */
+    static final String CACHE_PROPERTY = "roadregistry.cache.persons";
+    static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "persons-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File file;
+    private final File logFile;
+    private final WriteAheadLog wal;
+    private final Object compactLock = new Object();
+    private final OffHeapPersonStore store = new OffHeapPersonStore();
+    private final Map<String, PersonRecord> cache;
+    private final Snapshot.PrefixCrc fileCrc;
+    private final Snapshot.PrefixCrc logCrc;
+
+    private boolean loaded;
+    private long seenLength = -1;
+    private long seenModified = -1;
+    private long seenLogLength = -1;
+    private long seenLogModified = -1;
+    private int logRecords;
+    private boolean compactionQueued;
+    private SparseIndex sparse;
+    private long sparseLength = -1;
+    private long sparseModified = -1;
+
+    PersonRegistry(File file) {
+        this(file, WriteAheadLog.unlogged());
+    }
+
+    PersonRegistry(File file, WriteAheadLog wal) {
+        this.file = file;
+        this.logFile = new File(file.getPath() + ".log");
+        this.wal = wal;
+        this.fileCrc = new Snapshot.PrefixCrc(file);
+        this.logCrc = new Snapshot.PrefixCrc(logFile);
+        int cacheSize = Integer.getInteger(CACHE_PROPERTY, DEFAULT_CACHE_SIZE);
+        this.cache = new LinkedHashMap<String, PersonRecord>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PersonRecord> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    File file() {
+        return file;
+    }
+
+    File logFile() {
+        return logFile;
+    }
+
+    /**
+     * Returns the last (newest) row stored for the ID, or null if there is none.
+     */
+    synchronized PersonRecord find(String id) throws IOException {
+        if (!loaded && logFile.length() == 0) {
+            SparseIndex index = sparseIndex();
+            if (index != null) {
+                String line = index.last(id);
+                return line == null ? null : PersonRecord.parse(line);
+            }
+        }
+        ensureLoaded();
+        PersonRecord cached = cache.get(id);
+        if (cached != null) {
+            RegistryMetrics.cacheHit();
+            return cached;
+        }
+        int row = store.lastRow(id);
+        if (row < 0) {
+            return null;
+        }
+        RegistryMetrics.cacheMiss();
+        PersonRecord record = store.record(row);
+        if (record != null) {
+            cache.put(id, record);
+        }
+        return record;
+    }
+
+    /**
+     * Returns the raw lines stored for the ID, in file order.
+     */
+    synchronized List<String> linesFor(String id) throws IOException {
+        if (!loaded && logFile.length() == 0) {
+            SparseIndex index = sparseIndex();
+            if (index != null) {
+                return index.linesFor(id);
+            }
+        }
+        ensureLoaded();
+        List<String> out = new ArrayList<>(1);
+        for (int row = store.firstRow(id); row >= 0; row = store.nextRow(row)) {
+            out.add(store.line(row));
+        }
+        return out;
+    }
+
+    synchronized int size() throws IOException {
+        ensureLoaded();
+        return store.size();
+    }
+
+    /**
+     * Calls the visitor with the last row of every ID, in no particular order.
+     * Rows that do not parse as a person are skipped.
+     */
+    synchronized void forEachPerson(Consumer<PersonRecord> visitor) throws IOException {
+        ensureLoaded();
+        store.forEachLastRow(row -> {
+            PersonRecord record = store.record(row);
+            if (record != null) {
+                visitor.accept(record);
+            }
+        });
+    }
+
+    synchronized int pendingChanges() throws IOException {
+        ensureLoaded();
+        return logRecords;
+    }
+
+    /**
+     * Appends one line to the end of the file and indexes it.
+     */
+    void append(String line) throws IOException {
+        wal.awaitDurable(appendLocked(Collections.singletonList(line)));
+    }
+
+    /**
+     * Appends many lines in one write, in the given order, and indexes them.
+     */
+    void appendAll(List<String> newLines) throws IOException {
+        wal.awaitDurable(appendLocked(newLines));
+    }
+
+    private synchronized long appendLocked(List<String> newLines) throws IOException {
+        ensureLoaded();
+        StringBuilder out = new StringBuilder();
+        for (String line : newLines) {
+            out.append(line).append(NEWLINE);
+        }
+        long ticket = wal.append(file, out.toString().getBytes(StandardCharsets.UTF_8));
+        for (String line : newLines) {
+            store.add(line);
+            // A new row for a known ID is now the one find answers with
+            cache.remove(PersonRecord.keyOf(line));
+        }
+        remember();
+        return ticket;
+    }
+
+    /**
+     * Replaces every row stored for the ID with the given lines (one per
+     * existing row, same order) and records the change in the log. The
+     * replacement lines may carry a different ID.
+     */
+    void replace(String id, List<String> replacements) throws IOException {
+        wal.awaitDurable(replaceLocked(id, replacements));
+    }
+
+    private synchronized long replaceLocked(String id, List<String> replacements) throws IOException {
+        ensureLoaded();
+        int[] rows = store.rows(id);
+        if (rows.length == 0) {
+            return 0;
+        }
+        if (rows.length != replacements.size()) {
+            throw new IllegalArgumentException("expected " + rows.length + " rows for " + id);
+        }
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < rows.length; i++) {
+            out.append("R|").append(rows[i]).append('|').append(replacements.get(i)).append(NEWLINE);
+        }
+        long ticket = wal.append(logFile, out.toString().getBytes(StandardCharsets.UTF_8));
+        cache.remove(id);
+        for (int i = 0; i < rows.length; i++) {
+            store.set(rows[i], replacements.get(i));
+            cache.remove(PersonRecord.keyOf(replacements.get(i)));
+        }
+        logRecords += rows.length;
+        remember();
+        maybeCompact();
+        return ticket;
+    }
+
+    /**
+     * Sets the suspended flag (the last token) on every row for the ID.
+     */
+    void setSuspended(String id, boolean suspend) throws IOException {
+        long ticket;
+        synchronized (this) {
+            ensureLoaded();
+            if (store.firstRow(id) < 0) {
+                return;
+            }
+            List<String> updated = new ArrayList<>();
+            for (String line : linesFor(id)) {
+                updated.add(withSuspended(line, suspend));
+            }
+            ticket = replaceLocked(id, updated);
+        }
+        RegistryMetrics.suspensionsWritten(suspend, 1);
+        wal.awaitDurable(ticket);
+    }
+
+    /**
+     * Sets the suspended flag on every row of every listed ID, writing all the
+     * change records in one pass.
+     */
+    void setSuspended(Collection<String> ids, boolean suspend) throws IOException {
+        wal.awaitDurable(setSuspendedLocked(ids, suspend));
+    }
+
+    private synchronized long setSuspendedLocked(Collection<String> ids, boolean suspend) throws IOException {
+        ensureLoaded();
+        List<int[]> touched = new ArrayList<>();
+        List<String> replacements = new ArrayList<>();
+        for (String id : ids) {
+            int[] rows = store.rows(id);
+            if (rows.length == 0) {
+                continue;
+            }
+            touched.add(rows);
+            for (int row : rows) {
+                replacements.add(withSuspended(store.line(row), suspend));
+            }
+        }
+        if (replacements.isEmpty()) {
+            return 0;
+        }
+        StringBuilder out = new StringBuilder();
+        int next = 0;
+        for (int[] rows : touched) {
+            for (int row : rows) {
+                out.append("R|").append(row).append('|').append(replacements.get(next++)).append(NEWLINE);
+            }
+        }
+        long ticket = wal.append(logFile, out.toString().getBytes(StandardCharsets.UTF_8));
+        // The ID token is unchanged, so the index stays as it is.
+        next = 0;
+        for (int[] rows : touched) {
+            for (int row : rows) {
+                store.set(row, replacements.get(next++));
+            }
+        }
+        for (String id : ids) {
+            cache.remove(id);
+        }
+        logRecords += replacements.size();
+        remember();
+        maybeCompact();
+        RegistryMetrics.suspensionsWritten(suspend, touched.size());
+        return ticket;
+    }
+
+    /**
+     * Re-joins a row with its last token replaced, exactly like the original
+     * split/re-join in Person.updateSuspensionStatus.
+     */
+    static String withSuspended(String line, boolean suspend) {
+        String[] fullParts = line.split("\\|");
+        int n = fullParts.length;
+        fullParts[n - 1] = Boolean.toString(suspend);
+        StringBuilder sb = new StringBuilder(fullParts[0]);
+        for (int i = 1; i < n; i++) {
+            sb.append("|").append(fullParts[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Folds the change log into persons.txt.
+     *
+     * The bulk of the rewrite runs without holding the registry lock: we take a
+     * copy of the rows and note how much of the log it covers, write the copy
+     * to a temp file, then re-lock only to add rows appended meanwhile, swap the
+     * temp file in and keep the log records written since the copy.
+     */
+    void compact() throws IOException {
+        synchronized (compactLock) {
+            compactOnce();
+        }
+    }
+
+    private void compactOnce() throws IOException {
+        List<String> snapshot;
+        long logMark;
+        synchronized (this) {
+            ensureLoaded();
+            if (logRecords == 0) {
+                return;
+            }
+            snapshot = new ArrayList<>(store.size());
+            for (int row = 0; row < store.size(); row++) {
+                snapshot.add(store.line(row));
+            }
+            logMark = logFile.length();
+        }
+
+        File tmp = new File(file.getPath() + ".compact");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            for (String out : snapshot) {
+                writer.write(out);
+                writer.newLine();
+            }
+        }
+
+        synchronized (this) {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.APPEND)) {
+                for (int i = snapshot.size(); i < store.size(); i++) {
+                    writer.write(store.line(i));
+                    writer.newLine();
+                }
+            }
+            File logTmp = new File(logFile.getPath() + ".compact");
+            int kept = copyLogTail(logMark, logTmp);
+            // A crash between the two renames leaves the old log over the new
+            // base; replaying it is harmless. Rows may have changed ID, so the
+            // sorted index no longer holds, and the snapshot no longer
+            // describes these files.
+            SparseIndex.delete(file);
+            Snapshot.delete(file);
+            RegistryMetrics.written(tmp.length() + logTmp.length());
+            wal.replaceFiles(new File[] { tmp, logTmp }, new File[] { file, logFile });
+            RegistryMetrics.fileRewritten();
+            fileCrc.reset();
+            logCrc.reset();
+            logRecords = kept;
+            remember();
+        }
+    }
+
+    private int copyLogTail(long from, File dest) throws IOException {
+        int kept = 0;
+        try (FileInputStream in = new FileInputStream(logFile);
+                BufferedWriter writer = Files.newBufferedWriter(dest.toPath(), StandardCharsets.UTF_8)) {
+            in.getChannel().position(from);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String record;
+            while ((record = reader.readLine()) != null) {
+                writer.write(record);
+                writer.newLine();
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private void maybeCompact() {
+        if (compactionQueued || logRecords < COMPACT_MIN_RECORDS) {
+            return;
+        }
+        if (logFile.length() < COMPACT_MAX_LOG_BYTES && logRecords < store.size() * COMPACT_RATIO) {
+            return;
+        }
+        compactionQueued = true;
+        COMPACTOR.execute(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                synchronized (PersonRegistry.this) {
+                    compactionQueued = false;
+                }
+            }
+        });
+    }
+
+    /** The file's sparse index, re-read whenever the file changes; null if none. */
+    private SparseIndex sparseIndex() throws IOException {
+        if (file.length() != sparseLength || file.lastModified() != sparseModified) {
+            sparse = SparseIndex.open(file);
+            sparseLength = file.length();
+            sparseModified = file.lastModified();
+        }
+        return sparse;
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded && file.length() == seenLength && file.lastModified() == seenModified
+                && logFile.length() == seenLogLength && logFile.lastModified() == seenLogModified) {
+            return;
+        }
+        store.clear();
+        cache.clear();
+        fileCrc.reset();
+        logCrc.reset();
+        logRecords = 0;
+        // 1) Rows and log position from the snapshot, if it still matches both files
+        long from = 0;
+        long logFrom = 0;
+        ByteBuffer snapshot = Snapshot.open(file);
+        if (snapshot != null) {
+            PrefixMark mark = PrefixMark.read(snapshot);
+            PrefixMark logMark = PrefixMark.read(snapshot);
+            if (mark.matches(file, fileCrc) && logMark.matches(logFile, logCrc)) {
+                logRecords = snapshot.getInt();
+                store.read(snapshot);
+                from = mark.length;
+                logFrom = logMark.length;
+            }
+        }
+        // 2) Rows appended since, then change records logged since
+        RecordScanner.scan(file, from, Long.MAX_VALUE,
+                (buf, start, end) -> store.add(RecordScanner.decode(buf, start, end)));
+        if (logFile.exists()) {
+            int replayed = 0;
+            try (FileInputStream in = new FileInputStream(logFile)) {
+                in.getChannel().position(logFrom);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String record;
+                while ((record = reader.readLine()) != null) {
+                    replay(record);
+                    replayed++;
+                }
+            }
+            logRecords += replayed;
+            RegistryMetrics.scanned(replayed, logFile.length() - logFrom);
+        }
+        loaded = true;
+        remember();
+    }
+
+    /**
+     * Writes the loaded rows to a {@link Snapshot} next to the file. The next
+     * load maps it and only reads rows and change records written after it.
+     */
+    synchronized void writeSnapshot() throws IOException {
+        ensureLoaded();
+        PrefixMark mark = PrefixMark.of(file, file.length(), fileCrc);
+        PrefixMark logMark = PrefixMark.of(logFile, logFile.length(), logCrc);
+        Snapshot.write(file, out -> {
+            mark.write(out);
+            logMark.write(out);
+            out.putInt(logRecords);
+            store.write(out);
+        });
+    }
+
+    private void replay(String record) {
+        // R|<row>|<line>; anything else (e.g. a torn last write) is ignored.
+        if (!record.startsWith("R|")) {
+            return;
+        }
+        int bar = record.indexOf('|', 2);
+        if (bar < 0) {
+            return;
+        }
+        try {
+            int row = Integer.parseInt(record.substring(2, bar));
+            if (row >= 0 && row < store.size()) {
+                store.set(row, record.substring(bar + 1));
+            }
+        } catch (NumberFormatException ex) {
+            // not a record we wrote
+        }
+    }
+
+    private void remember() {
+        seenLength = file.length();
+        seenModified = file.lastModified();
+        seenLogLength = logFile.length();
+        seenLogModified = logFile.lastModified();
+    }
+}
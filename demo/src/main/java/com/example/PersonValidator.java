@@ -0,0 +1,210 @@
+package com.example;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Field checks for person records, shared by addPerson, addPersons and
+ * updatePersonalDetails.
+ *
+ * The rules are the ones Person has always applied:
+ * - ID matches ^(?=.{10}$)(?=.*[^A-Za-z0-9].*[^A-Za-z0-9])[2-9]{2}.{6}[A-Z]{2}$
+ * - address.split("\\|") gives exactly 5 parts and part 3 is "Victoria"
+ * - birthDate parses with Person.DTF ("dd-MM-uuuu", strict)
+ *
+ * but they are checked by walking the strings directly: no Pattern, no split
+ * array and, for ordinary dates, no LocalDate or DateTimeParseException. The
+ * accept path allocates nothing. Instead of a bare boolean the first rule that
+ * fails is reported as a {@link Reason}.
+ *
+ * A null field fails the rule for that field.
+ */
+public final class PersonValidator {
+
+    /** Outcome of a check: VALID, or the first rule that failed. */
+    public enum Reason {
+        VALID,
+        /** ID is not exactly 10 characters, or contains a line break. */
+        ID_LENGTH,
+        /** ID does not start with two digits 2-9. */
+        ID_PREFIX,
+        /** ID does not end with two letters A-Z. */
+        ID_SUFFIX,
+        /** ID has fewer than two characters outside A-Z, a-z, 0-9. */
+        ID_SPECIAL_CHARS,
+        /** Address does not have exactly five '|'-separated parts. */
+        ADDRESS_PARTS,
+        /** Fourth address part (the state) is not "Victoria". */
+        ADDRESS_STATE,
+        /** Birth date is not a real date in dd-MM-uuuu form. */
+        BIRTH_DATE;
+
+        public boolean isValid() {
+            return this == VALID;
+        }
+    }
+
+    private static final String STATE = "Victoria";
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    private PersonValidator() {
+    }
+
+    public static Reason validate(Person person) {
+        return validate(person.getId(), person.getAddress(), person.getBirthDate());
+    }
+
+    /**
+     * Checks ID, then address, then birth date, like addPerson always has,
+     * and returns the first failure.
+     */
+    public static Reason validate(String id, String address, String birthDate) {
+        Reason r = checkId(id);
+        if (r != Reason.VALID) {
+            return r;
+        }
+        r = checkAddress(address);
+        if (r != Reason.VALID) {
+            return r;
+        }
+        return checkBirthDate(birthDate);
+    }
+
+    public static Reason checkId(String id) {
+        if (id == null) {
+            return Reason.ID_LENGTH;
+        }
+        // The regex counts code points, and '.' excludes line terminators.
+        int len = id.length();
+        int count = 0;
+        int specials = 0;
+        int first = 0;
+        int second = 0;
+        int beforeLast = 0;
+        int last = 0;
+        for (int i = 0; i < len; ) {
+            int cp = id.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isLineTerminator(cp) || ++count > 10) {
+                return Reason.ID_LENGTH;
+            }
+            if (!isAsciiAlnum(cp)) {
+                specials++;
+            }
+            if (count == 1) {
+                first = cp;
+            } else if (count == 2) {
+                second = cp;
+            }
+            beforeLast = last;
+            last = cp;
+        }
+        if (count != 10) {
+            return Reason.ID_LENGTH;
+        }
+        if (first < '2' || first > '9' || second < '2' || second > '9') {
+            return Reason.ID_PREFIX;
+        }
+        if (beforeLast < 'A' || beforeLast > 'Z' || last < 'A' || last > 'Z') {
+            return Reason.ID_SUFFIX;
+        }
+        return specials >= 2 ? Reason.VALID : Reason.ID_SPECIAL_CHARS;
+    }
+
+    public static Reason checkAddress(String address) {
+        if (address == null) {
+            return Reason.ADDRESS_PARTS;
+        }
+        // split() drops trailing empty parts, so five parts means: four pipes,
+        // a non-empty fifth part, then nothing but pipes.
+        int p0 = address.indexOf('|');
+        int p1 = p0 < 0 ? -1 : address.indexOf('|', p0 + 1);
+        int p2 = p1 < 0 ? -1 : address.indexOf('|', p1 + 1);
+        int p3 = p2 < 0 ? -1 : address.indexOf('|', p2 + 1);
+        if (p3 < 0) {
+            return Reason.ADDRESS_PARTS;
+        }
+        int p4 = address.indexOf('|', p3 + 1);
+        int fifthEnd = p4 < 0 ? address.length() : p4;
+        if (fifthEnd == p3 + 1) {
+            return Reason.ADDRESS_PARTS;
+        }
+        for (int i = fifthEnd; i < address.length(); i++) {
+            if (address.charAt(i) != '|') {
+                return Reason.ADDRESS_PARTS;
+            }
+        }
+        if (p3 - p2 - 1 != STATE.length() || !address.startsWith(STATE, p2 + 1)) {
+            return Reason.ADDRESS_STATE;
+        }
+        return Reason.VALID;
+    }
+
+    public static Reason checkBirthDate(String birthDate) {
+        if (birthDate == null) {
+            return Reason.BIRTH_DATE;
+        }
+        int len = birthDate.length();
+        if (len < 10 || !digits(birthDate, 0, 2) || birthDate.charAt(2) != '-'
+                || !digits(birthDate, 3, 5) || birthDate.charAt(5) != '-') {
+            return Reason.BIRTH_DATE;
+        }
+        if (len > 10) {
+            // Signed or 5+ digit years: rare enough to leave to the formatter.
+            char c = birthDate.charAt(6);
+            if ((c == '+' || c == '-' || (c >= '0' && c <= '9')) && digits(birthDate, 7, len)) {
+                return parsesStrictly(birthDate) ? Reason.VALID : Reason.BIRTH_DATE;
+            }
+            return Reason.BIRTH_DATE;
+        }
+        if (!digits(birthDate, 6, 10)) {
+            return Reason.BIRTH_DATE;
+        }
+        int day = number(birthDate, 0, 2);
+        int month = number(birthDate, 3, 5);
+        int year = number(birthDate, 6, 10);
+        if (month < 1 || month > 12 || day < 1) {
+            return Reason.BIRTH_DATE;
+        }
+        int maxDay = DAYS_IN_MONTH[month - 1];
+        if (month == 2 && (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0)) {
+            maxDay = 29;
+        }
+        return day <= maxDay ? Reason.VALID : Reason.BIRTH_DATE;
+    }
+
+    private static boolean parsesStrictly(String date) {
+        try {
+            LocalDate.parse(date, Person.DTF);
+            return true;
+        } catch (DateTimeParseException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isLineTerminator(int cp) {
+        return cp == '\n' || cp == '\r' || cp == '\u0085' || cp == '\u2028' || cp == '\u2029';
+    }
+
+    private static boolean isAsciiAlnum(int cp) {
+        return (cp >= 'A' && cp <= 'Z') || (cp >= 'a' && cp <= 'z') || (cp >= '0' && cp <= '9');
+    }
+
+    private static boolean digits(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int number(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+}
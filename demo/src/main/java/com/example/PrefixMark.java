@@ -0,0 +1,137 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+
+/**
+ * What a {@link Snapshot} or {@link SparseIndex} knows about the first bytes
+ * of a data file it was built from: how many bytes it covers, which file they
+ * were in, and a CRC32 of the last few KB before that point.
+ *
+ * Checking a mark is cheap, so a load stays proportional to what was
+ * appended since and not to the whole file: the file must still be the same
+ * file (its file key, i.e. device and inode; every rewrite here, compaction
+ * included, renames a new file into place and so changes it), at least as
+ * long, and end the covered part with the same bytes. Platforms without file
+ * keys get only the length and tail check.
+ *
+ * With {@link #VERIFY_PROPERTY} set, marks also record a CRC32 of every
+ * covered byte and a check reads the whole covered part again; a mark
+ * written without one then never matches. That catches edits made in place
+ * anywhere in the file, at the cost of a full read on every load.
+ */
+final class PrefixMark {
+    /** System property: "true" to record and check a CRC of every covered byte. */
+    static final String VERIFY_PROPERTY = "roadregistry.verify.full";
+
+    private static final int TAIL_BYTES = 4096;
+
+    final long length;
+    private final String fileKey;
+    private final int tail;
+    private final boolean hasCrc;
+    private final int crc;
+
+    private PrefixMark(long length, String fileKey, int tail, boolean hasCrc, int crc) {
+        this.length = length;
+        this.fileKey = fileKey;
+        this.tail = tail;
+        this.hasCrc = hasCrc;
+        this.crc = crc;
+    }
+
+    static boolean verifyFully() {
+        return Boolean.getBoolean(VERIFY_PROPERTY);
+    }
+
+    /**
+     * Marks the first length bytes of the file. full keeps the running CRC
+     * between marks and is only read when {@link #verifyFully()}.
+     */
+    static PrefixMark of(File file, long length, Snapshot.PrefixCrc full) throws IOException {
+        boolean deep = verifyFully();
+        return new PrefixMark(length, fileKey(file), tail(file, length), deep, deep ? full.upTo(length) : 0);
+    }
+
+    /** True if the file still starts with the bytes this mark covers. */
+    boolean matches(File file, Snapshot.PrefixCrc full) throws IOException {
+        if (length == 0) {
+            return true;
+        }
+        if (file.length() < length) {
+            return false;
+        }
+        String key = fileKey(file);
+        if (!key.isEmpty() && !fileKey.isEmpty() && !key.equals(fileKey)) {
+            return false;
+        }
+        if (tail(file, length) != tail) {
+            return false;
+        }
+        return !verifyFully() || (hasCrc && full.upTo(length) == crc);
+    }
+
+    void write(Snapshot.Writer out) throws IOException {
+        out.putLong(length);
+        out.putBytes(fileKey.getBytes(StandardCharsets.UTF_8));
+        out.putInt(tail);
+        out.putInt(hasCrc ? 1 : 0);
+        out.putInt(crc);
+    }
+
+    static PrefixMark read(ByteBuffer in) {
+        long length = in.getLong();
+        String key = new String(Snapshot.getBytes(in), StandardCharsets.UTF_8);
+        int tail = in.getInt();
+        boolean hasCrc = in.getInt() != 0;
+        return new PrefixMark(length, key, tail, hasCrc, in.getInt());
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeLong(length);
+        out.writeUTF(fileKey);
+        out.writeInt(tail);
+        out.writeBoolean(hasCrc);
+        out.writeInt(crc);
+    }
+
+    static PrefixMark read(DataInputStream in) throws IOException {
+        return new PrefixMark(in.readLong(), in.readUTF(), in.readInt(), in.readBoolean(), in.readInt());
+    }
+
+    /** The file's key as text, or "" if it has none or does not exist. */
+    private static String fileKey(File file) throws IOException {
+        try {
+            Object key = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+            return key == null ? "" : key.toString();
+        } catch (NoSuchFileException e) {
+            return "";
+        }
+    }
+
+    /** CRC32 of the (up to) 4 KB of the file just before length; 0 for none. */
+    private static int tail(File file, long length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        long from = Math.max(0, length - TAIL_BYTES);
+        ByteBuffer buf = ByteBuffer.allocate((int) (length - from));
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, from + buf.position()) < 0) {
+                    return 0;
+                }
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.capacity());
+        return (int) crc.getValue();
+    }
+}
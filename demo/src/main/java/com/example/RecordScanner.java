@@ -0,0 +1,378 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Byte-level reader for persons.txt and demerits.txt.
+ *
+ * The file is memory-mapped and scanned for line ends and '|' bytes directly,
+ * so nothing is allocated for lines the caller is not interested in: no
+ * readLine() String, no split() array, no substrings and no LocalDate. Callers
+ * get byte offsets into the mapped buffer and use the helpers here to compare
+ * an ID in place or to decode a "dd-MM-uuuu" date straight to an epoch day.
+ *
+ * persons.txt rows carry a variable-width address with embedded pipes (see
+ * Person); the field helpers therefore come in both directions, so a row can be
+ * cut at its first three pipes and its last two, leaving the address between.
+ *
+ * Line ends follow BufferedReader.readLine: "\n", "\r" or "\r\n".
+ */
+final class RecordScanner {
+    /** Sentinel returned by the numeric decoders for malformed input. */
+    static final int INVALID = Integer.MIN_VALUE;
+
+    /** Files are mapped in windows of this size so files over 2 GB still work. */
+    private static final long WINDOW = 256L * 1024 * 1024;
+
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    private RecordScanner() {
+    }
+
+    /** Receives each line as the byte range [start, end) of buf. */
+    interface LineVisitor {
+        void line(MappedByteBuffer buf, int start, int end) throws IOException;
+    }
+
+    /**
+     * Calls the visitor once per line of the file, in order. A missing file has
+     * no lines.
+     */
+    static void scan(File file, LineVisitor visitor) throws IOException {
+        scan(file, 0, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Calls the visitor once per line in the byte range [from, to) of the
+     * file, in order. Both ends must be line starts (or the end of the file),
+     * as returned by {@link #splitLines}; to is capped at the file's length.
+     */
+    static void scan(File file, long from, long to, LineVisitor visitor) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long[] lines = new long[1];
+        LineVisitor counting = (buf, start, end) -> {
+            lines[0]++;
+            visitor.line(buf, start, end);
+        };
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = Math.min(to, ch.size());
+            long position = from;
+            while (position < size) {
+                long length = Math.min(WINDOW, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = scanWindow(buf, (int) length, last, counting);
+                if (consumed == 0) {
+                    throw new IOException("line longer than " + WINDOW + " bytes in " + file);
+                }
+                position += consumed;
+            }
+            RegistryMetrics.scanned(lines[0], Math.max(0, size - from));
+        }
+    }
+
+    /**
+     * Cuts the file into at most parts byte ranges of about equal size, each
+     * starting at a line start, so they can be scanned in parallel. Returns the
+     * boundaries: range k is [bounds[k], bounds[k + 1]). Ranges can be empty
+     * when lines are longer than a range.
+     */
+    static long[] splitLines(File file, int parts) throws IOException {
+        long size = file.exists() ? file.length() : 0;
+        long[] bounds = new long[parts + 1];
+        bounds[parts] = size;
+        if (size == 0) {
+            return bounds;
+        }
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int k = 1; k < parts; k++) {
+                bounds[k] = nextLineStart(ch, Math.max(bounds[k - 1], size / parts * k), size);
+            }
+        }
+        return bounds;
+    }
+
+    /** First line start at or after pos; a "\r\n" is never split. */
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        if (pos <= 0) {
+            return 0;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        boolean afterCr = false;
+        long at = pos - 1;
+        while (at < size) {
+            buf.clear();
+            int n = ch.read(buf, at);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++, at++) {
+                byte b = buf.get(i);
+                if (afterCr && b != '\n') {
+                    return at;
+                }
+                if (b == '\n') {
+                    return at + 1;
+                }
+                afterCr = b == '\r';
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Scans complete lines of one window and returns how many bytes were
+     * consumed; a trailing partial line is left for the next window unless
+     * this is the end of the file.
+     */
+    private static int scanWindow(MappedByteBuffer buf, int limit, boolean last, LineVisitor visitor)
+            throws IOException {
+        int start = 0;
+        int i = 0;
+        while (i < limit) {
+            byte b = buf.get(i);
+            if (b == '\n') {
+                visitor.line(buf, start, i);
+                start = ++i;
+            } else if (b == '\r') {
+                if (i + 1 < limit) {
+                    visitor.line(buf, start, i);
+                    i += buf.get(i + 1) == '\n' ? 2 : 1;
+                    start = i;
+                } else if (last) {
+                    visitor.line(buf, start, i);
+                    start = ++i;
+                } else {
+                    // Can't tell yet whether a '\n' follows in the next window.
+                    return start;
+                }
+            } else {
+                i++;
+            }
+        }
+        if (start < limit && last) {
+            visitor.line(buf, start, limit);
+            return limit;
+        }
+        return start;
+    }
+
+    /** Position of the first b in [from, to), or -1. */
+    static int indexOf(MappedByteBuffer buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Position of the last b in [from, to), or -1. */
+    static int lastIndexOf(MappedByteBuffer buf, int from, int to, byte b) {
+        for (int i = to - 1; i >= from; i--) {
+            if (buf.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** End of the first field of a line: the first '|' or the line end. */
+    static int firstFieldEnd(MappedByteBuffer buf, int start, int end) {
+        int bar = indexOf(buf, start, end, (byte) '|');
+        return bar < 0 ? end : bar;
+    }
+
+    /**
+     * Finds the field boundaries of a persons.txt row without splitting it.
+     * On return cuts holds the positions of the pipes after id, firstName and
+     * lastName, then the pipes before birthDate and before suspended; the
+     * address is everything in (cuts[2], cuts[3]), pipes included. Returns
+     * false if the row has fewer than six fields.
+     */
+    static boolean personFields(MappedByteBuffer buf, int start, int end, int[] cuts) {
+        int from = start;
+        for (int k = 0; k < 3; k++) {
+            int bar = indexOf(buf, from, end, (byte) '|');
+            if (bar < 0) {
+                return false;
+            }
+            cuts[k] = bar;
+            from = bar + 1;
+        }
+        int beforeSuspended = lastIndexOf(buf, from, end, (byte) '|');
+        if (beforeSuspended < 0) {
+            return false;
+        }
+        int beforeBirth = lastIndexOf(buf, from, beforeSuspended, (byte) '|');
+        if (beforeBirth < 0) {
+            return false;
+        }
+        cuts[3] = beforeBirth;
+        cuts[4] = beforeSuspended;
+        return true;
+    }
+
+    /**
+     * True if bytes [start, end) are the UTF-8 encoding of s. ASCII IDs, the
+     * normal case, are compared byte by byte without decoding.
+     */
+    static boolean matches(MappedByteBuffer buf, int start, int end, String s) {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) >= 0x80) {
+                return decode(buf, start, end).equals(s);
+            }
+        }
+        if (end - start != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (buf.get(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** True if [aStart, aEnd) and [bStart, bEnd) hold the same bytes. */
+    static boolean sameBytes(MappedByteBuffer buf, int aStart, int aEnd, int bStart, int bEnd) {
+        if (aEnd - aStart != bEnd - bStart) {
+            return false;
+        }
+        for (int i = 0; i < aEnd - aStart; i++) {
+            if (buf.get(aStart + i) != buf.get(bStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String decode(MappedByteBuffer buf, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a "dd-MM-uuuu" date to its epoch day, with the same strict rules
+     * as Person.DTF (real calendar dates only). Returns {@link #INVALID} if the
+     * bytes are not such a date. Anything not in the plain 10-byte shape (e.g.
+     * a signed five-digit year) is handed to LocalDate.parse.
+     */
+    static int parseEpochDay(MappedByteBuffer buf, int start, int end) {
+        if (end - start != 10 || buf.get(start + 2) != '-' || buf.get(start + 5) != '-') {
+            return parseEpochDaySlow(buf, start, end);
+        }
+        int day = digits(buf, start, 2);
+        int month = digits(buf, start + 3, 2);
+        int year = digits(buf, start + 6, 4);
+        if (day < 0 || month < 0 || year < 0 || month < 1 || month > 12 || day < 1) {
+            return INVALID;
+        }
+        int maxDay = DAYS_IN_MONTH[month - 1];
+        if (month == 2 && isLeap(year)) {
+            maxDay = 29;
+        }
+        if (day > maxDay) {
+            return INVALID;
+        }
+        return (int) epochDay(year, month, day);
+    }
+
+    private static int parseEpochDaySlow(MappedByteBuffer buf, int start, int end) {
+        try {
+            return (int) LocalDate.parse(decode(buf, start, end), Person.DTF).toEpochDay();
+        } catch (DateTimeParseException ex) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * Decodes a decimal int like Integer.parseInt does for ASCII input.
+     * Returns {@link #INVALID} if the bytes are not a number.
+     */
+    static int parseInt(MappedByteBuffer buf, int start, int end) {
+        if (start >= end) {
+            return INVALID;
+        }
+        int i = start;
+        boolean negative = false;
+        byte first = buf.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                return INVALID;
+            }
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) {
+                // Integer.parseInt also takes non-ASCII digits; defer to it.
+                try {
+                    return Integer.parseInt(decode(buf, start, end));
+                } catch (NumberFormatException ex) {
+                    return INVALID;
+                }
+            }
+            value = value * 10 + d;
+            if (value > Integer.MAX_VALUE + 1L) {
+                return INVALID;
+            }
+        }
+        if (!negative && value > Integer.MAX_VALUE) {
+            return INVALID;
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private static int digits(MappedByteBuffer buf, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /** Same arithmetic as LocalDate.toEpochDay. */
+    static long epochDay(int year, int month, int day) {
+        long y = year;
+        long total = 365 * y;
+        if (y >= 0) {
+            total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        } else {
+            total -= y / -4 - y / -100 + y / -400;
+        }
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeap(year)) {
+                total--;
+            }
+        }
+        return total - 719528; // days from 0000-01-01 to 1970-01-01
+    }
+}
@@ -0,0 +1,286 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Always-on metrics for the registry.
+ *
+ * Every public write operation on {@link Person} is timed into a
+ * {@link LatencyHistogram} and charged with the lines, bytes read and bytes
+ * written it caused itself (I/O is also counted per thread, so a call only sees
+ * its own). Alongside that there are registry-wide counters for I/O, full-file
+ * rewrites, log forces, suspension flips and validation rejections by rule.
+ * Recording is a handful of LongAdder increments, no locks.
+ *
+ * The metrics are registered as MXBeans under "com.example:type=RegistryMetrics"
+ * when the class loads (set {@link #JMX_PROPERTY} to "false" to skip that), and
+ * can be pushed anywhere else with a {@link MetricsReporter}.
+ */
+public final class RegistryMetrics implements RegistryMetricsMXBean {
+    /** System property: "false" disables MXBean registration. */
+    static final String JMX_PROPERTY = "roadregistry.metrics.jmx";
+    static final String OBJECT_NAME = "com.example:type=RegistryMetrics";
+
+    /** The public operations that are timed. */
+    public enum Operation {
+        ADD_PERSON("addPerson"),
+        ADD_PERSONS("addPersons"),
+        ADD_DEMERIT_POINTS("addDemeritPoints"),
+        ADD_DEMERIT_POINTS_BATCH("addDemeritPointsBatch"),
+        UPDATE_PERSONAL_DETAILS("updatePersonalDetails");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final RegistryMetrics INSTANCE = new RegistryMetrics();
+
+    // Lines, bytes read and bytes written by the current thread, ever.
+    private static final ThreadLocal<long[]> THREAD_IO = ThreadLocal.withInitial(() -> new long[3]);
+
+    static {
+        if (!"false".equals(System.getProperty(JMX_PROPERTY))) {
+            INSTANCE.register(ManagementFactory.getPlatformMBeanServer());
+        }
+    }
+
+    private final Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+    private final Map<PersonValidator.Reason, LongAdder> rejections = new EnumMap<>(PersonValidator.Reason.class);
+    private final LongAdder linesScanned = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder fileRewrites = new LongAdder();
+    private final LongAdder logForces = new LongAdder();
+    private final LongAdder suspensionsApplied = new LongAdder();
+    private final LongAdder suspensionsLifted = new LongAdder();
+    private final LongAdder offenseRejections = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private RegistryMetrics() {
+        for (Operation op : Operation.values()) {
+            operations.put(op, new OperationStats(op));
+        }
+        for (PersonValidator.Reason reason : PersonValidator.Reason.values()) {
+            if (!reason.isValid()) {
+                rejections.put(reason, new LongAdder());
+            }
+        }
+    }
+
+    public static RegistryMetrics get() {
+        return INSTANCE;
+    }
+
+    public OperationStats operation(Operation op) {
+        return operations.get(op);
+    }
+
+    public Collection<OperationStats> operations() {
+        return Collections.unmodifiableCollection(operations.values());
+    }
+
+    // --- recording ------------------------------------------------------------
+
+    /** One timed call; close it when the operation returns. */
+    static final class Call implements AutoCloseable {
+        private final OperationStats stats;
+        private final long[] io;
+        private final long start;
+        private final long lines;
+        private final long read;
+        private final long written;
+
+        private Call(OperationStats stats) {
+            this.stats = stats;
+            this.io = THREAD_IO.get();
+            this.lines = io[0];
+            this.read = io[1];
+            this.written = io[2];
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            stats.record(System.nanoTime() - start, io[0] - lines, io[1] - read, io[2] - written);
+        }
+    }
+
+    static Call begin(Operation op) {
+        return new Call(INSTANCE.operations.get(op));
+    }
+
+    /** A load read this many lines (or records) and bytes. */
+    static void scanned(long lines, long bytes) {
+        long[] io = THREAD_IO.get();
+        io[0] += lines;
+        io[1] += bytes;
+        INSTANCE.linesScanned.add(lines);
+        INSTANCE.bytesRead.add(bytes);
+    }
+
+    static void written(long bytes) {
+        THREAD_IO.get()[2] += bytes;
+        INSTANCE.bytesWritten.add(bytes);
+    }
+
+    static void fileRewritten() {
+        INSTANCE.fileRewrites.increment();
+    }
+
+    static void logForced() {
+        INSTANCE.logForces.increment();
+    }
+
+    static void suspensionsWritten(boolean suspend, int ids) {
+        (suspend ? INSTANCE.suspensionsApplied : INSTANCE.suspensionsLifted).add(ids);
+    }
+
+    static void rejected(PersonValidator.Reason reason) {
+        LongAdder counter = INSTANCE.rejections.get(reason);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    static void offenseRejected() {
+        INSTANCE.offenseRejections.increment();
+    }
+
+    static void cacheHit() {
+        INSTANCE.cacheHits.increment();
+    }
+
+    static void cacheMiss() {
+        INSTANCE.cacheMisses.increment();
+    }
+
+    // --- reading --------------------------------------------------------------
+
+    @Override
+    public long getLinesScanned() {
+        return linesScanned.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getFileRewrites() {
+        return fileRewrites.sum();
+    }
+
+    @Override
+    public long getLogForces() {
+        return logForces.sum();
+    }
+
+    @Override
+    public long getSuspensionsApplied() {
+        return suspensionsApplied.sum();
+    }
+
+    @Override
+    public long getSuspensionsLifted() {
+        return suspensionsLifted.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRejectionsByRule() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (Map.Entry<PersonValidator.Reason, LongAdder> e : rejections.entrySet()) {
+            out.put(e.getKey().name(), e.getValue().sum());
+        }
+        return out;
+    }
+
+    public long rejections(PersonValidator.Reason reason) {
+        LongAdder counter = rejections.get(reason);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    @Override
+    public long getOffenseRejections() {
+        return offenseRejections.sum();
+    }
+
+    @Override
+    public long getPersonCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getPersonCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Calls the reporter every period on the given scheduler until the
+     * returned future is cancelled.
+     */
+    public ScheduledFuture<?> schedule(MetricsReporter reporter, ScheduledExecutorService scheduler,
+            long period, TimeUnit unit) {
+        return scheduler.scheduleAtFixedRate(() -> reporter.report(this), period, period, unit);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("lines=").append(getLinesScanned())
+                .append(" read=").append(getBytesRead()).append('B')
+                .append(" written=").append(getBytesWritten()).append('B')
+                .append(" rewrites=").append(getFileRewrites())
+                .append(" forces=").append(getLogForces())
+                .append(" suspended=").append(getSuspensionsApplied())
+                .append(" lifted=").append(getSuspensionsLifted())
+                .append(" offenseRejections=").append(getOffenseRejections())
+                .append(" cacheHits=").append(getPersonCacheHits())
+                .append(" cacheMisses=").append(getPersonCacheMisses())
+                .append(" rejections=").append(getRejectionsByRule());
+        for (OperationStats stats : operations.values()) {
+            sb.append(System.lineSeparator()).append(stats);
+        }
+        return sb.toString();
+    }
+
+    private void register(MBeanServer server) {
+        try {
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+            for (OperationStats stats : operations.values()) {
+                server.registerMBean(stats,
+                        new ObjectName(OBJECT_NAME + ",operation=" + stats.operation().label()));
+            }
+        } catch (InstanceAlreadyExistsException e) {
+            // another copy of the class (e.g. a second class loader) got there first
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link RegistryMetrics}: registry-wide I/O and rule counters.
+ * Per-operation latencies are separate beans, see {@link OperationStatsMXBean}.
+ */
+public interface RegistryMetricsMXBean {
+
+    /** Lines read from persons.txt, its change log and demerits.txt while (re)loading. */
+    long getLinesScanned();
+
+    long getBytesRead();
+
+    /** Bytes appended to data files and the write-ahead log, plus compaction output. */
+    long getBytesWritten();
+
+    /** Data files rewritten in full (compactions). */
+    long getFileRewrites();
+
+    /** FileChannel.force calls made to commit the write-ahead log. */
+    long getLogForces();
+
+    long getSuspensionsApplied();
+
+    long getSuspensionsLifted();
+
+    /** Rejected person records by the first rule they broke (PersonValidator.Reason names). */
+    Map<String, Long> getRejectionsByRule();
+
+    /** Offenses turned away by addDemeritPoints (bad date, points or unknown ID). */
+    long getOffenseRejections();
+
+    /** Registry lookups answered from the cache of decoded person records. */
+    long getPersonCacheHits();
+
+    /** Registry lookups that had to decode the record from the off-heap store. */
+    long getPersonCacheMisses();
+}
@@ -0,0 +1,244 @@
+package com.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+/**
+ * The registry's files under one storage root, split into N shards by hash
+ * of the person ID.
+ *
+ * A sharded root holds a manifest ("shards.properties", with the shard count)
+ * and one directory per shard ("shard-000", "shard-001", ...), each with its
+ * own persons.txt and demerits.txt. Everything about one person lives in one
+ * shard, so a lookup or a rewrite (registry compaction, sorted compaction)
+ * only touches that shard's files, and full scans and bulk writes run one
+ * task per shard in parallel. All shards share the root's write-ahead log, so
+ * parallel appends to different shards still end in one group commit.
+ *
+ * A root without a manifest is the original layout: persons.txt and
+ * demerits.txt directly in the root, used as a single shard. It stays that
+ * way until {@link ShardMigrator} moves it over. A brand new root (no manifest
+ * and no data files) is created with {@link #SHARDS_PROPERTY} shards.
+ *
+ * The shard of an ID is fixed by String.hashCode, which is the same on every
+ * JVM, and the count in the manifest; changing the count means migrating.
+ */
+final class RegistryShards {
+    /** System property: storage root used when no directory is given. */
+    static final String ROOT_PROPERTY = "roadregistry.storage.root";
+    /** System property: shard count for new roots (default 1, the original layout). */
+    static final String SHARDS_PROPERTY = "roadregistry.storage.shards";
+    static final String MANIFEST = "shards.properties";
+
+    /** Runs against one shard; see {@link #forEachShard(ShardTask)}. */
+    interface ShardTask {
+        void run(int shard) throws IOException;
+    }
+
+    private final File root;
+    private final boolean sharded;
+    private final PersonRegistry[] registries;
+    private final DemeritIndex[] demerits;
+
+    private RegistryShards(File root, int count, boolean sharded, WriteAheadLog wal) {
+        this.root = root;
+        this.sharded = sharded;
+        this.registries = new PersonRegistry[count];
+        this.demerits = new DemeritIndex[count];
+        for (int i = 0; i < count; i++) {
+            File dir = shardDir(i);
+            if (sharded) {
+                dir.mkdirs();
+            }
+            registries[i] = new PersonRegistry(new File(dir, Person.PERSONS_FILE), wal);
+            demerits[i] = DemeritIndex.open(dir, Person.DEMERITS_FILE, wal);
+        }
+    }
+
+    /**
+     * Opens the storage under root (null for the configured root, see
+     * {@link #configuredRoot()}).
+     */
+    static RegistryShards open(File root, WriteAheadLog wal) throws IOException {
+        File manifest = new File(root, MANIFEST);
+        if (manifest.exists()) {
+            return new RegistryShards(root, readCount(manifest), true, wal);
+        }
+        int count = Integer.getInteger(SHARDS_PROPERTY, 1);
+        boolean fresh = !new File(root, Person.PERSONS_FILE).exists()
+                && !new File(root, Person.DEMERITS_FILE).exists();
+        if (count > 1 && fresh) {
+            writeManifest(root, count);
+            return new RegistryShards(root, count, true, wal);
+        }
+        return new RegistryShards(root, 1, false, wal);
+    }
+
+    /** The root named by {@link #ROOT_PROPERTY}, or null for the working directory. */
+    static File configuredRoot() {
+        String root = System.getProperty(ROOT_PROPERTY);
+        return root == null ? null : new File(root);
+    }
+
+    File root() {
+        return root;
+    }
+
+    int count() {
+        return registries.length;
+    }
+
+    /** Directory holding shard i's files; the root itself for the original layout. */
+    File shardDir(int i) {
+        return sharded ? shardDir(root, i) : root;
+    }
+
+    static File shardDir(File root, int i) {
+        return new File(root, String.format("shard-%03d", i));
+    }
+
+    static int shardOf(String id, int count) {
+        int h = id.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), count);
+    }
+
+    PersonRegistry registry(String id) {
+        return registries[shardOf(id, registries.length)];
+    }
+
+    DemeritIndex demerits(String id) {
+        return demerits[shardOf(id, demerits.length)];
+    }
+
+    PersonRegistry registry(int shard) {
+        return registries[shard];
+    }
+
+    DemeritIndex demerits(int shard) {
+        return demerits[shard];
+    }
+
+    /**
+     * Runs the task once per shard, shards in parallel on the common pool.
+     * If any shard fails, one of the failures is rethrown once all are done.
+     */
+    void forEachShard(ShardTask task) throws IOException {
+        try {
+            IntStream.range(0, count()).parallel().forEach(i -> {
+                try {
+                    task.run(i);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Loads every shard's person and demerit indexes, in parallel. */
+    void load() throws IOException {
+        forEachShard(i -> {
+            registries[i].size();
+            demerits[i].load();
+        });
+    }
+
+    // --- bulk writes, split by shard ------------------------------------------
+
+    /** Appends person rows, each to its ID's shard, keeping input order per shard. */
+    void appendPersons(List<String> rows) throws IOException {
+        List<List<String>> split = split(rows.size());
+        for (String row : rows) {
+            split.get(shardOf(PersonRecord.keyOf(row), count())).add(row);
+        }
+        forEachShard(i -> {
+            if (!split.get(i).isEmpty()) {
+                registries[i].appendAll(split.get(i));
+            }
+        });
+    }
+
+    /** Appends offenses (epochDays[i] is the date of offenses.get(i)) to their shards. */
+    void appendOffenses(List<Offense> offenses, long[] epochDays) throws IOException {
+        List<List<Integer>> split = split(offenses.size());
+        for (int i = 0; i < offenses.size(); i++) {
+            split.get(shardOf(offenses.get(i).getPersonId(), count())).add(i);
+        }
+        forEachShard(s -> {
+            List<Integer> positions = split.get(s);
+            if (positions.isEmpty()) {
+                return;
+            }
+            List<Offense> part = new ArrayList<>(positions.size());
+            long[] days = new long[positions.size()];
+            for (int k = 0; k < positions.size(); k++) {
+                part.add(offenses.get(positions.get(k)));
+                days[k] = epochDays[positions.get(k)];
+            }
+            demerits[s].appendAll(part, days);
+        });
+    }
+
+    /** Sets the suspended flag for every listed ID, one batch per shard. */
+    void setSuspended(Collection<String> ids, boolean suspend) throws IOException {
+        List<List<String>> split = split(ids.size());
+        for (String id : ids) {
+            split.get(shardOf(id, count())).add(id);
+        }
+        forEachShard(i -> {
+            if (!split.get(i).isEmpty()) {
+                registries[i].setSuspended(split.get(i), suspend);
+            }
+        });
+    }
+
+    private <T> List<List<T>> split(int expected) {
+        List<List<T>> out = new ArrayList<>(count());
+        for (int i = 0; i < count(); i++) {
+            out.add(new ArrayList<>(expected / count() + 1));
+        }
+        return out;
+    }
+
+    // --- manifest -------------------------------------------------------------
+
+    private static int readCount(File manifest) throws IOException {
+        Properties props = new Properties();
+        try (Reader in = new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8)) {
+            props.load(in);
+        }
+        try {
+            int count = Integer.parseInt(props.getProperty("shards", ""));
+            if (count < 1) {
+                throw new IOException(manifest + ": shard count " + count);
+            }
+            return count;
+        } catch (NumberFormatException e) {
+            throw new IOException(manifest + ": no shard count", e);
+        }
+    }
+
+    /**
+     * Writes the manifest through a temp file and a rename. For a migration
+     * this is the commit point: until the rename the root is still read as
+     * the original layout.
+     */
+    static void writeManifest(File root, int count) throws IOException {
+        File manifest = new File(root, MANIFEST);
+        File tmp = new File(root, MANIFEST + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(("shards=" + count + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running totals behind the month-end reports (see {@link ReportEngine}).
+ *
+ * Each worker fills its own aggregate from a part of the data and the parts
+ * are then combined with {@link #merge}. Every total is a plain sum, so the
+ * result does not depend on how the data was cut up or in which order parts
+ * are merged. Not thread-safe; one aggregate per worker.
+ */
+final class ReportAggregate {
+    /** Age bands of the points report; the first one is the under-21 threshold of 6 points. */
+    static final String[] BANDS = { "under 21", "21-25", "26-35", "36-50", "51-65", "66 and over", "unknown" };
+    /** Band for offenses whose person is missing or has no readable birth date. */
+    static final int UNKNOWN_BAND = BANDS.length - 1;
+    /** Upper age (exclusive) of each band but the last two. */
+    private static final int[] BAND_ENDS = { 21, 26, 36, 51, 66 };
+    /** Highest points a single offense can carry; the histogram has one column per value. */
+    static final int MAX_POINTS = 6;
+
+    // Per band: offenses, points, then one count per points value 1..MAX_POINTS
+    private final long[][] bands = new long[BANDS.length][2 + MAX_POINTS];
+
+    // Per month since year 0 (year * 12 + month - 1), from firstMonth on
+    private int firstMonth;
+    private long[] monthOffenses = new long[0];
+    private long[] monthPoints = new long[0];
+
+    // Per city key: persons, suspended persons
+    private final Map<String, long[]> cities = new TreeMap<>();
+
+    /** Band of a driver who is age (offense year minus birth year, as for the threshold). */
+    static int band(int age) {
+        for (int i = 0; i < BAND_ENDS.length; i++) {
+            if (age < BAND_ENDS[i]) {
+                return i;
+            }
+        }
+        return BAND_ENDS.length;
+    }
+
+    /** Counts one offense; birthYear is Integer.MIN_VALUE when unknown. */
+    void offense(int birthYear, int epochDay, int points) {
+        LocalDate day = LocalDate.ofEpochDay(epochDay);
+        long[] band = bands[birthYear == Integer.MIN_VALUE ? UNKNOWN_BAND : band(day.getYear() - birthYear)];
+        band[0]++;
+        band[1] += points;
+        if (points >= 1 && points <= MAX_POINTS) {
+            band[1 + points]++;
+        }
+        int month = day.getYear() * 12 + day.getMonthValue() - 1;
+        ensureMonth(month);
+        monthOffenses[month - firstMonth]++;
+        monthPoints[month - firstMonth] += points;
+    }
+
+    /** Counts one person for the city report; city is null when the address has none. */
+    void person(String city, boolean suspended) {
+        long[] totals = cities.computeIfAbsent(city == null ? "" : city, k -> new long[2]);
+        totals[0]++;
+        if (suspended) {
+            totals[1]++;
+        }
+    }
+
+    /** Adds other's totals to this one and returns this. */
+    ReportAggregate merge(ReportAggregate other) {
+        for (int b = 0; b < bands.length; b++) {
+            for (int i = 0; i < bands[b].length; i++) {
+                bands[b][i] += other.bands[b][i];
+            }
+        }
+        if (other.monthOffenses.length > 0) {
+            ensureMonth(other.firstMonth);
+            ensureMonth(other.firstMonth + other.monthOffenses.length - 1);
+            for (int i = 0; i < other.monthOffenses.length; i++) {
+                monthOffenses[other.firstMonth - firstMonth + i] += other.monthOffenses[i];
+                monthPoints[other.firstMonth - firstMonth + i] += other.monthPoints[i];
+            }
+        }
+        for (Map.Entry<String, long[]> e : other.cities.entrySet()) {
+            long[] totals = cities.computeIfAbsent(e.getKey(), k -> new long[2]);
+            totals[0] += e.getValue()[0];
+            totals[1] += e.getValue()[1];
+        }
+        return this;
+    }
+
+    /** Grows the month arrays so they cover month. */
+    private void ensureMonth(int month) {
+        int length = monthOffenses.length;
+        if (length == 0) {
+            firstMonth = month;
+            monthOffenses = new long[12];
+            monthPoints = new long[12];
+            return;
+        }
+        if (month >= firstMonth && month < firstMonth + length) {
+            return;
+        }
+        int first = Math.min(firstMonth, month);
+        int last = Math.max(firstMonth + length - 1, month);
+        // Leave room on the side that grew, so a spread of months costs a few copies
+        int size = Math.max(last - first + 1, 2 * length);
+        if (month < firstMonth) {
+            first = last - size + 1;
+        }
+        long[] offenses = new long[size];
+        long[] points = new long[size];
+        System.arraycopy(monthOffenses, 0, offenses, firstMonth - first, length);
+        System.arraycopy(monthPoints, 0, points, firstMonth - first, length);
+        firstMonth = first;
+        monthOffenses = offenses;
+        monthPoints = points;
+    }
+
+    // --- results --------------------------------------------------------------
+
+    long bandOffenses(int band) {
+        return bands[band][0];
+    }
+
+    long bandPoints(int band) {
+        return bands[band][1];
+    }
+
+    long monthOffenses(int year, int month) {
+        int i = year * 12 + month - 1 - firstMonth;
+        return i >= 0 && i < monthOffenses.length ? monthOffenses[i] : 0;
+    }
+
+    /** { persons, suspended persons } for a city key, or null if nobody lives there. */
+    long[] city(String city) {
+        long[] totals = cities.get(city);
+        return totals == null ? null : totals.clone();
+    }
+
+    // --- CSV ------------------------------------------------------------------
+
+    /** age_band,threshold,offenses,points,points_1..points_6 (threshold empty for unknown). */
+    void writePointsByAgeBand(File file) throws IOException {
+        try (Writer out = csv(file)) {
+            StringBuilder line = new StringBuilder("age_band,threshold,offenses,points");
+            for (int p = 1; p <= MAX_POINTS; p++) {
+                line.append(",points_").append(p);
+            }
+            writeLine(out, line);
+            for (int b = 0; b < BANDS.length; b++) {
+                line.append(BANDS[b]).append(',');
+                if (b != UNKNOWN_BAND) {
+                    line.append(b == 0 ? 6 : 12);
+                }
+                for (long value : bands[b]) {
+                    line.append(',').append(value);
+                }
+                writeLine(out, line);
+            }
+        }
+    }
+
+    /** month,offenses,points for every month with an offense, oldest first. */
+    void writeOffensesByMonth(File file) throws IOException {
+        try (Writer out = csv(file)) {
+            StringBuilder line = new StringBuilder("month,offenses,points");
+            writeLine(out, line);
+            for (int i = 0; i < monthOffenses.length; i++) {
+                if (monthOffenses[i] == 0) {
+                    continue;
+                }
+                int month = firstMonth + i;
+                line.append(String.format(Locale.ROOT, "%04d-%02d", month / 12, month % 12 + 1))
+                        .append(',').append(monthOffenses[i]).append(',').append(monthPoints[i]);
+                writeLine(out, line);
+            }
+        }
+    }
+
+    /**
+     * city,persons,suspended,suspension_rate by city key (lower-cased).
+     * Persons whose address has no city are counted under an empty city.
+     */
+    void writeSuspensionRateByCity(File file) throws IOException {
+        try (Writer out = csv(file)) {
+            StringBuilder line = new StringBuilder("city,persons,suspended,suspension_rate");
+            writeLine(out, line);
+            for (Map.Entry<String, long[]> e : cities.entrySet()) {
+                long persons = e.getValue()[0];
+                long suspended = e.getValue()[1];
+                line.append(quote(e.getKey())).append(',').append(persons).append(',').append(suspended)
+                        .append(',').append(String.format(Locale.ROOT, "%.4f", (double) suspended / persons));
+                writeLine(out, line);
+            }
+        }
+    }
+
+    private static Writer csv(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private static void writeLine(Writer out, StringBuilder line) throws IOException {
+        out.append(line).append(System.lineSeparator());
+        line.setLength(0);
+    }
+
+    /** Quotes a CSV field if it holds a comma, quote or line break. */
+    static String quote(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0
+                && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,130 @@
+package com.example;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Month-end reports over the whole registry, written as CSV files:
+ *
+ *   points_by_age_band.csv        offenses and points per age band, with a
+ *                                 count per points value; age is offense year
+ *                                 minus birth year, as for the 6/12 threshold
+ *   offenses_by_month.csv         offenses and points per calendar month
+ *   suspension_rate_by_city.csv   persons, suspended persons and their ratio
+ *                                 per city
+ *
+ * Usage:
+ *   java com.example.ReportEngine <output dir> [storage root]
+ *
+ * The data is read in one pass, one shard at a time. A shard's persons are
+ * read into a map from ID to birth year (and counted for the city report);
+ * its demerits are then streamed in slices, each offense joined to its person
+ * through that map, without loading any timelines. The slices are aggregated
+ * on their own cores into {@link ReportAggregate}s, which are merged into the
+ * totals before the map is dropped and the next shard is read. The registry
+ * itself is loaded as usual, but the report's own memory grows with the
+ * persons in the largest shard, not with all persons or the offense history.
+ *
+ * Run it offline with the tool, or online through
+ * {@link Person#writeMonthEndReports(File)}, which blocks writers while it
+ * runs.
+ */
+public final class ReportEngine {
+    static final String POINTS_BY_AGE_BAND = "points_by_age_band.csv";
+    static final String OFFENSES_BY_MONTH = "offenses_by_month.csv";
+    static final String SUSPENSION_RATE_BY_CITY = "suspension_rate_by_city.csv";
+
+    private ReportEngine() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: ReportEngine <output dir> [storage root]");
+            System.exit(2);
+        }
+        File out = new File(args[0]);
+        File root = args.length == 2 ? new File(args[1]) : RegistryShards.configuredRoot();
+        try (WriteAheadLog wal = WriteAheadLog.open(root)) {
+            RegistryShards shards = RegistryShards.open(root, wal);
+            ReportAggregate totals = aggregate(shards, slicesPerShard());
+            write(totals, out);
+            System.out.println("reports written to " + out);
+        }
+    }
+
+    /** Enough slices per shard to give every core work; shards are read one at a time. */
+    static int slicesPerShard() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Reads every shard and returns the merged totals. Each shard's demerits
+     * are cut into at most slices parts. No one may write while this runs.
+     */
+    static ReportAggregate aggregate(RegistryShards shards, int slices) throws IOException {
+        ReportAggregate totals = new ReportAggregate();
+        for (int i = 0; i < shards.count(); i++) {
+            // 1) Persons: birth year by ID for the join, and the city totals
+            Map<String, Integer> birthYears = new HashMap<>();
+            shards.registry(i).forEachPerson(p -> {
+                totals.person(RollingPointsView.cityOf(p.address), p.suspended);
+                try {
+                    birthYears.put(p.id, LocalDate.parse(p.birthDate, Person.DTF).getYear());
+                } catch (DateTimeParseException e) {
+                    // no age band; the person's offenses count as unknown
+                }
+            });
+
+            // 2) Offenses: the shard's slices in parallel, one partial each
+            List<DemeritStore.Slice> parts = shards.demerits(i).store().split(slices);
+            List<ReportAggregate> partials;
+            try {
+                partials = parts.parallelStream().map(slice -> {
+                    ReportAggregate partial = new ReportAggregate();
+                    try {
+                        slice.forEachOffense(new DemeritStore.OffenseVisitor() {
+                            // Offenses come in runs per person, so look each run up once
+                            private String lastId;
+                            private int birthYear;
+
+                            @Override
+                            public void offense(String id, int epochDay, int points) {
+                                if (id != lastId) {
+                                    birthYear = birthYears.getOrDefault(id, Integer.MIN_VALUE);
+                                    lastId = id;
+                                }
+                                partial.offense(birthYear, epochDay, points);
+                            }
+                        });
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return partial;
+                }).collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // 3) Merge; the shard's map is dropped before the next one is built
+            for (ReportAggregate partial : partials) {
+                totals.merge(partial);
+            }
+        }
+        return totals;
+    }
+
+    /** Writes the three CSV reports into dir, creating it if needed. */
+    static void write(ReportAggregate totals, File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        totals.writePointsByAgeBand(new File(dir, POINTS_BY_AGE_BAND));
+        totals.writeOffensesByMonth(new File(dir, OFFENSES_BY_MONTH));
+        totals.writeSuspensionRateByCity(new File(dir, SUSPENSION_RATE_BY_CITY));
+    }
+}
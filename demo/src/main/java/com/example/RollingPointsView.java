@@ -0,0 +1,456 @@
+package com.example;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Materialized view of every person's current demerit total: the points of
+ * offenses dated within [today - 2 years, today], the same window
+ * addDemeritPoints uses, anchored at today instead of at a new offense.
+ *
+ * Each person's total and suspended flag sit in one map entry, so
+ * {@link #currentPoints(String)} and {@link #isSuspended(String)} are single
+ * hash lookups. Totals change over time without any new offense, as old
+ * points age out of the window (and future-dated ones come into it). Those
+ * changes are queued as dated events in a heap. {@link #advanceTo(LocalDate)},
+ * run by the scheduler, applies the events that are due. It then re-checks the
+ * affected persons against the 6/12 threshold and flips isSuspended in
+ * whichever direction the rule now says. On a new year everybody is
+ * re-checked, because age, and with it the threshold, is by calendar year.
+ *
+ * The view mirrors the registry, it does not own it: Person feeds it every
+ * write it makes, and flips found by the view are written back through
+ * {@link SuspensionWriter}, outside the view's own lock.
+ *
+ * The same updates keep three secondary indexes for queries:
+ *  - a bitset of suspended persons, by the ordinal each person gets here;
+ *  - everyone with points, ordered by current total (highest first);
+ *  - a bitset per city, the third field of the address, matched ignoring case.
+ * {@link #suspended()}, {@link #topOffenders(int)}, {@link #inCity(String)}
+ * and {@link #suspendedIn(String)} read them under the view's lock and return
+ * a stream over a copy, so a result is consistent as of one moment and the
+ * caller can take its time consuming it.
+ */
+public final class RollingPointsView {
+
+    /**
+     * Persists a suspension flip found by the view. Implementations take the
+     * ID's lock, confirm with {@link #wouldSuspend(String)} that the flip is
+     * still wanted (an offense may have arrived meanwhile) and return whether
+     * they wrote it.
+     */
+    interface SuspensionWriter {
+        boolean write(String id, boolean suspend) throws IOException;
+    }
+
+    /** One person's place in the points ranking, as returned by {@link #topOffenders(int)}. */
+    public static final class Standing {
+        private final String id;
+        private final int points;
+        private final boolean suspended;
+
+        Standing(String id, int points, boolean suspended) {
+            this.id = id;
+            this.points = points;
+            this.suspended = suspended;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        public boolean isSuspended() {
+            return suspended;
+        }
+
+        @Override
+        public String toString() {
+            return id + "=" + points + (suspended ? " (suspended)" : "");
+        }
+    }
+
+    private static final class Entry {
+        final String id;
+        final int ordinal;
+        volatile int birthYear;
+        volatile int points;
+        volatile boolean suspended;
+        String city;
+
+        Entry(String id, int ordinal, int birthYear) {
+            this.id = id;
+            this.ordinal = ordinal;
+            this.birthYear = birthYear;
+        }
+    }
+
+    // Highest total first; ties by ID so the order is stable
+    private static final Comparator<Entry> BY_POINTS = (a, b) -> a.points != b.points
+            ? Integer.compare(b.points, a.points)
+            : a.id.compareTo(b.id);
+
+    /** A dated change to one person's total. */
+    private static final class Event implements Comparable<Event> {
+        final long day;
+        final Entry entry;
+        final int delta;
+
+        Event(long day, Entry entry, int delta) {
+            this.day = day;
+            this.entry = entry;
+            this.delta = delta;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            return Long.compare(day, o.day);
+        }
+    }
+
+    private final Clock clock;
+    private final SuspensionWriter writer;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+
+    // Secondary indexes, guarded by the view's lock
+    private final List<Entry> byOrdinal = new ArrayList<>();
+    private final BitSet suspendedSet = new BitSet();
+    private final TreeSet<Entry> ranking = new TreeSet<>(BY_POINTS);
+    private final Map<String, BitSet> byCity = new HashMap<>();
+
+    private LocalDate today;
+    private ScheduledFuture<?> ticker;
+
+    RollingPointsView(Clock clock, SuspensionWriter writer) {
+        this.clock = clock;
+        this.writer = writer;
+    }
+
+    /**
+     * Builds the view from every shard's registry and demerit index as of the
+     * clock's current date. Shards are read in parallel; suspension flags are
+     * taken as stored and the first {@link #advanceTo} reconciles them with
+     * the rule.
+     */
+    synchronized void rebuild(RegistryShards shards) throws IOException {
+        entries.clear();
+        events.clear();
+        byOrdinal.clear();
+        suspendedSet.clear();
+        ranking.clear();
+        byCity.clear();
+        today = LocalDate.now(clock);
+        shards.load();
+        for (int i = 0; i < shards.count(); i++) {
+            shards.registry(i).forEachPerson(r -> add(r.id, r.birthDate, r.address, r.suspended));
+        }
+        long now = today.toEpochDay();
+        for (int i = 0; i < shards.count(); i++) {
+            shards.demerits(i).forEachTimeline((id, timeline) -> {
+                Entry e = entries.get(id);
+                if (e == null) {
+                    return; // offenses for unknown IDs never count
+                }
+                for (int k = 0; k < timeline.size(); k++) {
+                    schedule(e, timeline.dayAt(k), timeline.pointsAt(k), now);
+                }
+            });
+        }
+    }
+
+    /** Current rolling total for the ID, or 0 if unknown. O(1). */
+    public int currentPoints(String id) {
+        Entry e = entries.get(id);
+        return e == null ? 0 : e.points;
+    }
+
+    /** Suspended flag for the ID as last written, or false if unknown. O(1). */
+    public boolean isSuspended(String id) {
+        Entry e = entries.get(id);
+        return e != null && e.suspended;
+    }
+
+    /** The date the view's totals are for. */
+    public synchronized LocalDate today() {
+        return today;
+    }
+
+    /** Whether the rule says the ID should be suspended as of today. */
+    synchronized boolean wouldSuspend(String id) {
+        Entry e = entries.get(id);
+        return e != null && shouldBeSuspended(e);
+    }
+
+    // --- updates fed by Person ------------------------------------------------
+
+    synchronized void onPersonAdded(String id, String birthDate, String address) {
+        Entry e = entries.get(id);
+        if (e == null) {
+            add(id, birthDate, address, false);
+            return;
+        }
+        // A second row for the ID: the newest row wins, as in the registry
+        e.birthYear = birthYear(birthDate);
+        setCity(e, cityOf(address));
+        setSuspended(e, false);
+    }
+
+    synchronized void onDetailsChanged(String id, String birthDate, String address) {
+        Entry e = entries.get(id);
+        if (e != null) {
+            e.birthYear = birthYear(birthDate);
+            setCity(e, cityOf(address));
+        }
+    }
+
+    synchronized void onOffense(String id, long epochDay, int points) {
+        Entry e = entries.get(id);
+        if (e != null) {
+            schedule(e, epochDay, points, today.toEpochDay());
+        }
+    }
+
+    synchronized void onSuspensionWritten(String id, boolean suspended) {
+        Entry e = entries.get(id);
+        if (e != null) {
+            setSuspended(e, suspended);
+        }
+    }
+
+    // --- queries --------------------------------------------------------------
+
+    /** IDs of everyone whose stored flag says suspended. */
+    public synchronized Stream<String> suspended() {
+        return ids(suspendedSet);
+    }
+
+    /**
+     * The n persons with the most points in the two years up to today,
+     * highest first. Persons without points are never listed.
+     */
+    public synchronized Stream<Standing> topOffenders(int n) {
+        List<Standing> out = new ArrayList<>(Math.min(n, ranking.size()));
+        for (Entry e : ranking) {
+            if (out.size() >= n) {
+                break;
+            }
+            out.add(new Standing(e.id, e.points, e.suspended));
+        }
+        return out.stream();
+    }
+
+    /** IDs of everyone whose address is in the city (case ignored). */
+    public synchronized Stream<String> inCity(String city) {
+        BitSet members = byCity.get(cityKey(city));
+        return members == null ? Stream.empty() : ids(members);
+    }
+
+    /** IDs of the suspended persons whose address is in the city. */
+    public synchronized Stream<String> suspendedIn(String city) {
+        BitSet members = byCity.get(cityKey(city));
+        if (members == null) {
+            return Stream.empty();
+        }
+        BitSet both = (BitSet) members.clone();
+        both.and(suspendedSet);
+        return ids(both);
+    }
+
+    private Stream<String> ids(BitSet set) {
+        List<String> out = new ArrayList<>(set.cardinality());
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            out.add(byOrdinal.get(i).id);
+        }
+        return out.stream();
+    }
+
+    // --- time ---------------------------------------------------------------
+
+    /**
+     * Moves the view to the given date: applies every expiry/activation due by
+     * then, re-checks the persons affected, and writes the resulting flips.
+     * Returns the number of flips written.
+     */
+    int advanceTo(LocalDate date) {
+        List<Entry> toFlip = new ArrayList<>();
+        synchronized (this) {
+            if (date.isBefore(today)) {
+                return 0;
+            }
+            boolean newYear = date.getYear() != today.getYear();
+            today = date;
+            Set<Entry> touched = new HashSet<>();
+            long now = date.toEpochDay();
+            while (!events.isEmpty() && events.peek().day <= now) {
+                Event ev = events.poll();
+                addPoints(ev.entry, ev.delta);
+                touched.add(ev.entry);
+            }
+            for (Entry e : newYear ? entries.values() : touched) {
+                if (shouldBeSuspended(e) != e.suspended) {
+                    toFlip.add(e);
+                }
+            }
+        }
+        return writeFlips(toFlip);
+    }
+
+    /**
+     * Reconciles every person with the rule as of the clock's date.
+     * Returns the number of flips written.
+     */
+    int reconcile() {
+        List<Entry> toFlip = new ArrayList<>();
+        synchronized (this) {
+            for (Entry e : entries.values()) {
+                if (shouldBeSuspended(e) != e.suspended) {
+                    toFlip.add(e);
+                }
+            }
+        }
+        return writeFlips(toFlip);
+    }
+
+    private int writeFlips(List<Entry> toFlip) {
+        int written = 0;
+        for (Entry e : toFlip) {
+            boolean suspend = !e.suspended;
+            try {
+                if (writer.write(e.id, suspend)) {
+                    synchronized (this) {
+                        setSuspended(e, suspend);
+                    }
+                    written++;
+                }
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Checks the clock every period and advances the view whenever the date
+     * has moved on.
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, long period, TimeUnit unit) {
+        stop();
+        ticker = scheduler.scheduleAtFixedRate(() -> advanceTo(LocalDate.now(clock)), 0, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+    }
+
+    // --- helpers ------------------------------------------------------------
+
+    private void add(String id, String birthDate, String address, boolean suspended) {
+        Entry e = new Entry(id, byOrdinal.size(), birthYear(birthDate));
+        byOrdinal.add(e);
+        entries.put(id, e);
+        setSuspended(e, suspended);
+        setCity(e, cityOf(address));
+    }
+
+    private void addPoints(Entry e, int delta) {
+        // Re-insert, since the ranking is ordered by points
+        if (e.points > 0) {
+            ranking.remove(e);
+        }
+        e.points += delta;
+        if (e.points > 0) {
+            ranking.add(e);
+        }
+    }
+
+    private void setSuspended(Entry e, boolean suspended) {
+        e.suspended = suspended;
+        suspendedSet.set(e.ordinal, suspended);
+    }
+
+    private void setCity(Entry e, String city) {
+        if (e.city != null) {
+            byCity.get(e.city).clear(e.ordinal);
+        }
+        e.city = city;
+        if (city != null) {
+            byCity.computeIfAbsent(city, k -> new BitSet()).set(e.ordinal);
+        }
+    }
+
+    /**
+     * City key of an address "number|street|city|state|country": the third
+     * field, lower-cased. Null if the address has no third field.
+     */
+    static String cityOf(String address) {
+        String[] parts = address.split("\\|");
+        return parts.length > 2 ? cityKey(parts[2]) : null;
+    }
+
+    private static String cityKey(String city) {
+        return city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private boolean shouldBeSuspended(Entry e) {
+        int age = today.getYear() - e.birthYear;
+        int threshold = (age < 21) ? 6 : 12;
+        return e.points > threshold;
+    }
+
+    /** Counts the offense now if it is inside today's window, and queues its future changes. */
+    private void schedule(Entry e, long day, int points, long now) {
+        long expiry = expiryDay(day);
+        if (expiry <= now) {
+            return;
+        }
+        if (day > now) {
+            events.add(new Event(day, e, points));
+        } else {
+            addPoints(e, points);
+        }
+        events.add(new Event(expiry, e, -points));
+    }
+
+    /**
+     * First date on which an offense on the given day is no longer inside the
+     * window, i.e. the first T with T.minusYears(2) after the offense. Worked
+     * out by stepping rather than plusYears(2) + 1 day, because minusYears
+     * clamps 29 February.
+     */
+    static long expiryDay(long offenseDay) {
+        LocalDate offense = LocalDate.ofEpochDay(offenseDay);
+        LocalDate t = offense.plusYears(2);
+        while (!t.minusYears(2).isAfter(offense)) {
+            t = t.plusDays(1);
+        }
+        return t.toEpochDay();
+    }
+
+    private static int birthYear(String birthDate) {
+        return LocalDate.parse(birthDate, Person.DTF).getYear();
+    }
+}
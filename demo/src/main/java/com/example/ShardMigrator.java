@@ -0,0 +1,115 @@
+package com.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Moves a storage root from the original two-file layout to N shards (see
+ * {@link RegistryShards}).
+ *
+ * Usage:
+ *   java com.example.ShardMigrator <shards> [storage root]
+ *
+ * Run it while nothing else is using the root. The change log is folded into
+ * persons.txt first, then every line of persons.txt and demerits.txt is copied
+ * to its ID's shard, in file order, so each shard reads back exactly as the
+ * original files did for its IDs. Writing the manifest is the commit point:
+ * if the migration stops before that, the root is still the original layout
+ * and the migration can simply be run again. Afterwards the old files are kept
+ * next to the shards with a ".unsharded" suffix.
+ *
+ * Only demerits.txt is migrated; a binary demerit store must be exported with
+ * {@link DemeritConverter} first.
+ */
+public final class ShardMigrator {
+    static final String OLD_SUFFIX = ".unsharded";
+
+    private ShardMigrator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: ShardMigrator <shards> [storage root]");
+            System.exit(2);
+        }
+        int count = Integer.parseInt(args[0]);
+        File root = args.length == 2 ? new File(args[1]) : RegistryShards.configuredRoot();
+        try (WriteAheadLog wal = WriteAheadLog.open(root)) {
+            long lines = migrate(root, count, wal);
+            System.out.println(lines + " lines moved to " + count + " shards");
+        }
+    }
+
+    /**
+     * Splits the original layout under root into count shards. Returns the
+     * number of lines copied.
+     */
+    static long migrate(File root, int count, WriteAheadLog wal) throws IOException {
+        if (count < 1) {
+            throw new IllegalArgumentException("shard count " + count);
+        }
+        if (new File(root, RegistryShards.MANIFEST).exists()) {
+            throw new IOException(root + " is already sharded");
+        }
+
+        // 1) Base file alone must hold every row
+        File persons = new File(root, Person.PERSONS_FILE);
+        PersonRegistry registry = new PersonRegistry(persons, wal);
+        registry.compact();
+        if (registry.pendingChanges() != 0) {
+            throw new IOException("change log for " + persons + " is still in use");
+        }
+
+        // 2) Copy every line to its shard; a rerun after a crash starts these over
+        File demerits = new File(root, Person.DEMERITS_FILE);
+        long lines = split(persons, root, count) + split(demerits, root, count);
+
+        // 3) Commit, then put the old files aside
+        wal.checkpoint();
+        RegistryShards.writeManifest(root, count);
+        for (File old : new File[] { persons, registry.logFile(), SparseIndex.indexFile(persons),
+                Snapshot.snapshotFile(persons), demerits, SparseIndex.indexFile(demerits),
+                Snapshot.snapshotFile(demerits) }) {
+            if (old.exists()) {
+                Files.move(old.toPath(), new File(old.getPath() + OLD_SUFFIX).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return lines;
+    }
+
+    private static long split(File source, File root, int count) throws IOException {
+        FileOutputStream[] files = new FileOutputStream[count];
+        BufferedOutputStream[] outs = new BufferedOutputStream[count];
+        long[] lines = { 0 };
+        try {
+            for (int i = 0; i < count; i++) {
+                File dir = RegistryShards.shardDir(root, i);
+                dir.mkdirs();
+                files[i] = new FileOutputStream(new File(dir, source.getName()), false);
+                outs[i] = new BufferedOutputStream(files[i], 1 << 16);
+            }
+            byte[] newline = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+            RecordScanner.scan(source, (buf, start, end) -> {
+                String line = RecordScanner.decode(buf, start, end);
+                BufferedOutputStream out = outs[RegistryShards.shardOf(PersonRecord.keyOf(line), count)];
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+                out.write(newline);
+                lines[0]++;
+            });
+            for (int i = 0; i < count; i++) {
+                outs[i].flush();
+                files[i].getFD().sync();
+            }
+        } finally {
+            for (int i = 0; i < count; i++) {
+                if (outs[i] != null) {
+                    outs[i].close();
+                }
+            }
+        }
+        return lines[0];
+    }
+}
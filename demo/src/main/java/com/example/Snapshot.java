@@ -0,0 +1,243 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of an in-memory index, kept next to the data file it was
+ * built from ("persons.txt.snapshot", "demerits.txt.snapshot").
+ *
+ * A snapshot file is
+ *
+ *   int magic | int version | body | int crc32(everything before it) | int magic
+ *
+ * where the body is written and read by the index that owns it
+ * ({@link PersonRegistry}, {@link DemeritIndex}). Bodies record a
+ * {@link PrefixMark} for each data file saying how far into it they reach,
+ * so on startup the index maps the snapshot, checks the marks, and only reads
+ * what was appended after it. Neither check reads the covered data, so a
+ * load costs the mapping plus the tail. A snapshot from another version,
+ * without its closing magic, or with a mark that no longer matches is ignored
+ * and the index loads from text as before; its own CRC is only checked with
+ * {@link PrefixMark#VERIFY_PROPERTY}, since the rename below means a crash
+ * cannot leave a half-written one in place.
+ *
+ * Snapshots are written through a temp file, forced and renamed into place.
+ * Anything that rewrites a data file must delete its snapshot
+ * ({@link #delete(File)}), as for the sparse index.
+ */
+final class Snapshot {
+    private static final int MAGIC = 0x5252534E; // "RRSN"
+    static final int VERSION = 3;
+
+    private Snapshot() {
+    }
+
+    /** Writes a snapshot body; see {@link #write(File, Body)}. */
+    interface Body {
+        void write(Writer out) throws IOException;
+    }
+
+    static File snapshotFile(File data) {
+        return new File(data.getPath() + ".snapshot");
+    }
+
+    static void delete(File data) throws IOException {
+        File snapshot = snapshotFile(data);
+        if (snapshot.exists() && !snapshot.delete()) {
+            throw new IOException("cannot delete " + snapshot);
+        }
+    }
+
+    /** Replaces the data file's snapshot with a new one holding body. */
+    static void write(File data, Body body) throws IOException {
+        File snapshot = snapshotFile(data);
+        File tmp = new File(snapshot.getPath() + ".tmp");
+        long bytes;
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer out = new Writer(ch);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            body.write(out);
+            bytes = out.finish();
+            ch.force(true);
+        }
+        Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        RegistryMetrics.written(bytes);
+    }
+
+    /**
+     * Maps the data file's snapshot and returns its body, or null if there is
+     * no snapshot or it fails its header or trailer (or, when verifying fully,
+     * its checksum). The mapping is private: an index may keep using slices
+     * of it as its own storage and write to them, which copies only the pages
+     * written and never touches the file. Snapshots over 2 GB are not mapped;
+     * the index loads from text instead.
+     */
+    static ByteBuffer open(File data) throws IOException {
+        File snapshot = snapshotFile(data);
+        long size = snapshot.length();
+        if (!snapshot.exists() || size < 16 || size > Integer.MAX_VALUE) {
+            return null;
+        }
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buf = ch.map(FileChannel.MapMode.PRIVATE, 0, size);
+        }
+        int end = (int) size - 8;
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || buf.getInt(end + 4) != MAGIC) {
+            return null;
+        }
+        if (PrefixMark.verifyFully()) {
+            CRC32 crc = new CRC32();
+            crc.update(buf.duplicate().limit(end));
+            if ((int) crc.getValue() != buf.getInt(end)) {
+                return null;
+            }
+        }
+        return buf.duplicate().position(8).limit(end).slice();
+    }
+
+    /**
+     * Buffered writer over a channel that keeps the running CRC32 of what it
+     * wrote. Numbers are big-endian, as ByteBuffer reads them back.
+     */
+    static final class Writer {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        private final CRC32 crc = new CRC32();
+        private long written;
+
+        private Writer(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        void putInt(int v) throws IOException {
+            room(4);
+            buf.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            room(8);
+            buf.putLong(v);
+        }
+
+        void putInts(int[] values, int from, int count) throws IOException {
+            for (int i = from; i < from + count; ) {
+                room(4);
+                int n = Math.min(from + count - i, buf.remaining() / 4);
+                buf.asIntBuffer().put(values, i, n);
+                buf.position(buf.position() + n * 4);
+                i += n;
+            }
+        }
+
+        /** Writes an int length followed by the bytes. */
+        void putBytes(byte[] bytes) throws IOException {
+            putInt(bytes.length);
+            put(ByteBuffer.wrap(bytes));
+        }
+
+        /** Writes the remaining bytes of src without a length. */
+        void put(ByteBuffer src) throws IOException {
+            src = src.duplicate();
+            while (src.hasRemaining()) {
+                room(1);
+                int n = Math.min(src.remaining(), buf.remaining());
+                ByteBuffer part = src.duplicate();
+                part.limit(part.position() + n);
+                buf.put(part);
+                src.position(src.position() + n);
+            }
+        }
+
+        private void room(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            crc.update(buf.array(), 0, buf.limit());
+            while (buf.hasRemaining()) {
+                written += ch.write(buf);
+            }
+            buf.clear();
+        }
+
+        /** Appends the CRC and closing magic and flushes; returns the file's length. */
+        private long finish() throws IOException {
+            flush();
+            buf.putInt((int) crc.getValue());
+            buf.putInt(MAGIC);
+            buf.flip();
+            while (buf.hasRemaining()) {
+                written += ch.write(buf);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * CRC32 of the first bytes of a data file that only grows, for
+     * {@link PrefixMark}'s full check. The owner keeps one per file and
+     * {@link #upTo(long)} reads only what was added since its last call, so
+     * each later snapshot reads just the new bytes. {@link #reset()} starts
+     * over, for when the file may have been rewritten.
+     */
+    static final class PrefixCrc {
+        private final File file;
+        private final CRC32 crc = new CRC32();
+        private long length;
+
+        PrefixCrc(File file) {
+            this.file = file;
+        }
+
+        /** CRC32 of the file's first length bytes, which must exist. */
+        int upTo(long length) throws IOException {
+            if (length < this.length) {
+                reset();
+            }
+            if (length > this.length) {
+                long from = this.length;
+                ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+                try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    while (this.length < length) {
+                        buf.clear().limit((int) Math.min(buf.capacity(), length - this.length));
+                        int n = ch.read(buf, this.length);
+                        if (n < 0) {
+                            throw new EOFException(file + " is shorter than " + length + " bytes");
+                        }
+                        crc.update(buf.array(), 0, n);
+                        this.length += n;
+                    }
+                }
+                RegistryMetrics.scanned(0, length - from);
+            }
+            return (int) crc.getValue();
+        }
+
+        void reset() {
+            crc.reset();
+            length = 0;
+        }
+    }
+
+    /** Reads an int length followed by that many bytes, as written by putBytes. */
+    static byte[] getBytes(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return bytes;
+    }
+}
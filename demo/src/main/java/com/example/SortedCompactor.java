@@ -0,0 +1,220 @@
+package com.example;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rewrites persons.txt and demerits.txt sorted by ID, without duplicate
+ * person rows, and
+ * writes a {@link SparseIndex} next to persons.txt so a registry that has not
+ * loaded the file yet can seek to an ID instead of scanning from the top.
+ * Demerits get no index: {@link DemeritIndex} always loads its whole store,
+ * so sorting them only keeps each person's offenses together on disk.
+ *
+ * Usage:
+ *   java com.example.SortedCompactor [--drop-repeats] [storage root]
+ *
+ * Duplicates are resolved as follows:
+ *  - persons.txt keeps one row per ID, the last one written (after the change
+ *    log is folded in). That is the row the registry already answers with, so
+ *    lookups give the same answers before and after a compaction.
+ *  - demerits.txt keeps every offense. Only with --drop-repeats are repeated
+ *    lines for the same ID, day and points dropped. Such a line may be a
+ *    write that was retried, but it can also be a second offense on the same
+ *    day with the same points, which would then no longer count, so this is
+ *    for data known to hold only retries. Nothing else is merged, and a
+ *    person's offenses stay in the order they were recorded.
+ * Rows that do not parse (bad person rows, demerit lines with a bad date or
+ * points) can never be found or counted and are dropped.
+ *
+ * Run it offline with the tool, or online through
+ * {@link Person#compactDataFiles(boolean)}, which blocks writers while it runs. In a
+ * sharded root each shard's files are compacted on their own, in parallel.
+ * The new files are forced and renamed over the old ones, so an interrupted
+ * run leaves the old files in place.
+ */
+public final class SortedCompactor {
+    private static final Comparator<String> BY_ID = SparseIndex::compare;
+
+    private SortedCompactor() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean dropRepeats = args.length > 0 && args[0].equals("--drop-repeats");
+        int rest = dropRepeats ? 1 : 0;
+        if (args.length - rest > 1) {
+            System.err.println("usage: SortedCompactor [--drop-repeats] [storage root]");
+            System.exit(2);
+        }
+        File root = args.length > rest ? new File(args[rest]) : RegistryShards.configuredRoot();
+        try (WriteAheadLog wal = WriteAheadLog.open(root)) {
+            RegistryShards shards = RegistryShards.open(root, wal);
+            AtomicInteger persons = new AtomicInteger();
+            AtomicInteger offenses = new AtomicInteger();
+            shards.forEachShard(i -> {
+                persons.addAndGet(compactPersons(shards.registry(i), wal));
+                File demerits = new File(shards.shardDir(i), Person.DEMERITS_FILE);
+                if (demerits.exists()) {
+                    offenses.addAndGet(compactDemerits(demerits, wal, dropRepeats));
+                }
+            });
+            System.out.println(persons + " persons, " + offenses + " offenses");
+        }
+    }
+
+    /**
+     * Folds the registry's change log into its file, then rewrites the file
+     * with the last row of every ID, sorted. Returns the number of rows kept.
+     * No one may write to the registry while this runs.
+     */
+    static int compactPersons(PersonRegistry registry, WriteAheadLog wal) throws IOException {
+        // 1) Base file alone must hold every row; row numbers change below
+        registry.compact();
+        if (registry.pendingChanges() != 0) {
+            throw new IOException("change log for " + registry.file() + " is still in use");
+        }
+
+        // 2) Last row per ID, ordered by ID
+        TreeMap<String, String> rows = new TreeMap<>(BY_ID);
+        File file = registry.file();
+        RecordScanner.scan(file, (buf, start, end) -> {
+            String line = RecordScanner.decode(buf, start, end);
+            if (PersonRecord.parse(line) != null) {
+                rows.put(PersonRecord.keyOf(line), line);
+            }
+        });
+
+        // 3) Write it out with its index and swap both in
+        List<String> sorted = new ArrayList<>(rows.values());
+        replaceSorted(file, sorted, wal, true);
+        return sorted.size();
+    }
+
+    /**
+     * Rewrites a demerits.txt file sorted by ID, keeping each person's lines
+     * in recorded order. Lines are parsed exactly as {@link TextDemeritStore}
+     * reads them, so every line it counts is kept (extra fields included) and
+     * only lines it skips are dropped. With dropRepeats, a line with the same
+     * ID, day and points as an earlier one is dropped too; note that this also
+     * merges two real offenses of equal points on the same day. Returns the
+     * number of lines kept. No one may write to the file while this runs.
+     */
+    static int compactDemerits(File file, WriteAheadLog wal, boolean dropRepeats) throws IOException {
+        Map<String, Lines> byId = new TreeMap<>(BY_ID);
+        RecordScanner.scan(file, new RecordScanner.LineVisitor() {
+            // The previous line's ID and its lines, so a run of one person's
+            // lines looks the ID up once
+            private MappedByteBuffer lastBuf;
+            private int lastStart;
+            private int lastEnd;
+            private Lines lines;
+
+            @Override
+            public void line(MappedByteBuffer buf, int start, int end) {
+                // Format in demerits.txt is: id|offenseDate|points
+                int idEnd = RecordScanner.firstFieldEnd(buf, start, end);
+                if (idEnd == end) {
+                    return;
+                }
+                int dateEnd = RecordScanner.indexOf(buf, idEnd + 1, end, (byte) '|');
+                if (dateEnd < 0) {
+                    return;
+                }
+                int pointsEnd = RecordScanner.firstFieldEnd(buf, dateEnd + 1, end);
+                int day = RecordScanner.parseEpochDay(buf, idEnd + 1, dateEnd);
+                int points = RecordScanner.parseInt(buf, dateEnd + 1, pointsEnd);
+                if (day == RecordScanner.INVALID || points == RecordScanner.INVALID) {
+                    return; // never counted, so nothing to keep
+                }
+                if (lines == null || buf != lastBuf
+                        || !RecordScanner.sameBytes(buf, start, idEnd, lastStart, lastEnd)) {
+                    lines = byId.computeIfAbsent(RecordScanner.decode(buf, start, idEnd),
+                            k -> new Lines(dropRepeats));
+                }
+                lastBuf = buf;
+                lastStart = start;
+                lastEnd = idEnd;
+                if (lines.seen == null || lines.seen.add(((long) day << 32) | (points & 0xFFFFFFFFL))) {
+                    lines.kept.add(RecordScanner.decode(buf, start, end));
+                }
+            }
+        });
+
+        List<String> sorted = new ArrayList<>();
+        for (Lines lines : byId.values()) {
+            sorted.addAll(lines.kept);
+        }
+        replaceSorted(file, sorted, wal, false);
+        return sorted.size();
+    }
+
+    /** One ID's demerit lines, and the day/points pairs kept if dropping repeats. */
+    private static final class Lines {
+        final List<String> kept = new ArrayList<>(1);
+        final Set<Long> seen;
+
+        Lines(boolean dropRepeats) {
+            seen = dropRepeats ? new HashSet<>() : null;
+        }
+    }
+
+    /**
+     * Writes sorted lines to a temp file, plus its index if indexed, then
+     * renames them over the originals. The old index goes first (an unindexed
+     * file keeps none): until the new one is in place lookups fall back to a
+     * full load, which is always correct.
+     */
+    private static void replaceSorted(File file, List<String> sorted, WriteAheadLog wal, boolean indexed)
+            throws IOException {
+        File tmp = new File(file.getPath() + ".sorted");
+        List<String> blockIds = new ArrayList<>();
+        List<Long> blockOffsets = new ArrayList<>();
+        long length = 0;
+        try (FileOutputStream fos = new FileOutputStream(tmp, false);
+                BufferedOutputStream out = new BufferedOutputStream(fos, 1 << 16)) {
+            byte[] newline = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < sorted.size(); i++) {
+                String line = sorted.get(i);
+                String id = PersonRecord.keyOf(line);
+                // Block starts are the first row of an ID, so a block never
+                // begins in the middle of one person's run of lines.
+                if (blockIds.size() * SparseIndex.BLOCK_ROWS <= i
+                        && (i == 0 || !id.equals(PersonRecord.keyOf(sorted.get(i - 1))))) {
+                    blockIds.add(id);
+                    blockOffsets.add(length);
+                }
+                byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                out.write(newline);
+                length += bytes.length + newline.length;
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        File idxTmp = new File(SparseIndex.indexFile(file).getPath() + ".sorted");
+        if (indexed) {
+            SparseIndex.write(tmp, idxTmp, length, blockIds, blockOffsets);
+        }
+
+        SparseIndex.delete(file);
+        Snapshot.delete(file);
+        RegistryMetrics.written(length);
+        wal.replaceFiles(new File[] { tmp }, new File[] { file });
+        RegistryMetrics.fileRewritten();
+        if (indexed) {
+            Files.move(idxTmp.toPath(), SparseIndex.indexFile(file).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sparse offset index over a text data file whose first part is sorted by
+ * ID (the first '|' field), as written by {@link SortedCompactor} for
+ * persons.txt and read by {@link PersonRegistry} until it loads the file.
+ *
+ * The index lives next to the data file ("persons.txt.idx") and holds the ID
+ * and byte offset of every {@link #BLOCK_ROWS}-th row of the sorted part. A
+ * lookup binary-searches those entries, seeks to the block that can hold the
+ * ID and reads forward only until the IDs pass it. Rows appended after the
+ * compaction (the unsorted tail) are scanned in full, so the index stays
+ * usable until the next compaction rebuilds it.
+ *
+ * IDs are ordered by code point, which is the byte order of their UTF-8 form.
+ *
+ * The index records a {@link PrefixMark} for the sorted part, as a snapshot
+ * does; if the data file no longer matches it, {@link #open(File)} ignores
+ * the index. Anything that rewrites the data file in place of the compactor
+ * must delete it ({@link #delete(File)}).
+ */
+final class SparseIndex {
+    /** One index entry per this many sorted rows. */
+    static final int BLOCK_ROWS = 64;
+
+    private static final int MAGIC = 0x52524958; // "RRIX"
+    private static final int VERSION = 2;
+
+    private final File data;
+    private final long sortedLength;
+    private final String[] firstIds;
+    private final long[] offsets;
+
+    private SparseIndex(File data, long sortedLength, String[] firstIds, long[] offsets) {
+        this.data = data;
+        this.sortedLength = sortedLength;
+        this.firstIds = firstIds;
+        this.offsets = offsets;
+    }
+
+    static File indexFile(File data) {
+        return new File(data.getPath() + ".idx");
+    }
+
+    static void delete(File data) throws IOException {
+        File idx = indexFile(data);
+        if (idx.exists() && !idx.delete()) {
+            throw new IOException("cannot delete " + idx);
+        }
+    }
+
+    /**
+     * Reads the index for a data file, or returns null if there is none or it
+     * no longer matches the file.
+     */
+    static SparseIndex open(File data) throws IOException {
+        File idx = indexFile(data);
+        if (!idx.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(idx)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            PrefixMark mark = PrefixMark.read(in);
+            int count = in.readInt();
+            String[] ids = new String[count];
+            long[] offsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = in.readUTF();
+                offsets[i] = in.readLong();
+            }
+            if (!mark.matches(data, new Snapshot.PrefixCrc(data))) {
+                return null;
+            }
+            return new SparseIndex(data, mark.length, ids, offsets);
+        } catch (EOFException e) {
+            return null; // torn index file
+        }
+    }
+
+    /**
+     * Writes the index for a data file whose first sortedLength bytes are
+     * sorted rows; ids/offsets are every BLOCK_ROWS-th row's ID and offset.
+     * The data file may be renamed into place afterwards: that keeps its
+     * file key.
+     */
+    static void write(File data, File idx, long sortedLength, List<String> ids, List<Long> offsets)
+            throws IOException {
+        try (FileOutputStream file = new FileOutputStream(idx);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            PrefixMark.of(data, sortedLength, new Snapshot.PrefixCrc(data)).write(out);
+            out.writeInt(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                out.writeUTF(ids.get(i));
+                out.writeLong(offsets.get(i));
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * Every line for the ID: first its rows in the sorted part, then any in
+     * the unsorted tail, in file order.
+     */
+    List<String> linesFor(String id) throws IOException {
+        List<String> out = new ArrayList<>();
+        lookup(id, out, false);
+        return out;
+    }
+
+    /** The last line for the ID in file order, or null. */
+    String last(String id) throws IOException {
+        List<String> out = new ArrayList<>(1);
+        lookup(id, out, true);
+        return out.isEmpty() ? null : out.get(0);
+    }
+
+    /** Adds the ID's lines to out; with lastOnly, each one found replaces the one before. */
+    private void lookup(String id, List<String> out, boolean lastOnly) throws IOException {
+        long[] scanned = new long[2];
+        try (FileChannel ch = FileChannel.open(data.toPath(), StandardOpenOption.READ)) {
+            // 1) Sorted part: start at the last block that begins before the ID
+            int block = lastBlockBefore(id);
+            LineReader sorted = new LineReader(ch, block < 0 ? 0 : offsets[block], sortedLength, scanned);
+            String line;
+            while ((line = sorted.next()) != null) {
+                int c = compare(PersonRecord.keyOf(line), id);
+                if (c > 0) {
+                    break;
+                }
+                if (c == 0) {
+                    add(out, line, lastOnly);
+                }
+            }
+
+            // 2) Unsorted tail, appended since the compaction
+            LineReader tail = new LineReader(ch, sortedLength, ch.size(), scanned);
+            while ((line = tail.next()) != null) {
+                if (PersonRecord.keyOf(line).equals(id)) {
+                    add(out, line, lastOnly);
+                }
+            }
+        } finally {
+            RegistryMetrics.scanned(scanned[0], scanned[1]);
+        }
+    }
+
+    private static void add(List<String> out, String line, boolean lastOnly) {
+        if (lastOnly) {
+            out.clear();
+        }
+        out.add(line);
+    }
+
+    /** Index of the last entry whose first ID is strictly below id, or -1. */
+    private int lastBlockBefore(String id) {
+        int lo = 0;
+        int hi = firstIds.length - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(firstIds[mid], id) < 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /** Orders IDs by code point, i.e. by their UTF-8 bytes. */
+    static int compare(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * Reads UTF-8 lines from [from, to) of a channel, adding the lines and
+     * bytes it reads to counts.
+     */
+    private static final class LineReader {
+        private final FileChannel ch;
+        private final long to;
+        private final long[] counts;
+        private final ByteBuffer buf = ByteBuffer.allocate(8192);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        private long position;
+
+        LineReader(FileChannel ch, long from, long to, long[] counts) {
+            this.ch = ch;
+            this.position = from;
+            this.to = to;
+            this.counts = counts;
+            buf.limit(0);
+        }
+
+        String next() throws IOException {
+            line.reset();
+            while (true) {
+                if (!buf.hasRemaining()) {
+                    int n = position < to ? fill() : -1;
+                    if (n <= 0) {
+                        return line.size() > 0 ? decode() : null;
+                    }
+                }
+                byte b = buf.get();
+                if (b == '\n') {
+                    return decode();
+                }
+                line.write(b);
+            }
+        }
+
+        private int fill() throws IOException {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), to - position));
+            int n = ch.read(buf, position);
+            buf.flip();
+            if (n > 0) {
+                position += n;
+                counts[1] += n;
+            }
+            return n;
+        }
+
+        private String decode() {
+            counts[0]++;
+            byte[] bytes = line.toByteArray();
+            int length = bytes.length;
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared out by hash of person ID.
+ *
+ * Operations on the same ID always land on the same stripe and are therefore
+ * serialized; operations on different IDs usually land on different stripes
+ * and run in parallel. Batch jobs that span many IDs take every stripe, always
+ * in index order, so they cannot deadlock with each other or with single-ID
+ * callers.
+ */
+final class StripedLocks {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * @param stripes number of locks, rounded up to a power of two
+     */
+    StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    int stripeOf(String key) {
+        int h = key.hashCode();
+        // Spread the high bits down, as HashMap does, before masking.
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    void lock(String key) {
+        locks[stripeOf(key)].lock();
+    }
+
+    void unlock(String key) {
+        locks[stripeOf(key)].unlock();
+    }
+
+    /** Locks every stripe, in order. Used by batch operations spanning many IDs. */
+    void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The original demerits.txt format: one "id|offenseDate|points" line per
+ * offense. Offense dates are stored exactly as submitted.
+ */
+final class TextDemeritStore implements DemeritStore {
+    private final File file;
+    private final WriteAheadLog wal;
+
+    private long seenLength = -1;
+    private long seenModified = -1;
+
+    TextDemeritStore(File file) {
+        this(file, WriteAheadLog.unlogged());
+    }
+
+    TextDemeritStore(File file, WriteAheadLog wal) {
+        this.file = file;
+        this.wal = wal;
+    }
+
+    File file() {
+        return file;
+    }
+
+    @Override
+    public void load(Timelines timelines, long from) throws IOException {
+        scan(from, Long.MAX_VALUE, new OffenseVisitor() {
+            private String lastId;
+            private DemeritTimeline last;
+
+            @Override
+            public void offense(String id, int epochDay, int points) {
+                if (id != lastId) {
+                    last = timelines.forId(id);
+                    lastId = id;
+                }
+                last.add(epochDay, points);
+            }
+        });
+        remember();
+    }
+
+    @Override
+    public long position() {
+        return file.length();
+    }
+
+    @Override
+    public File[] files() {
+        return new File[] { file };
+    }
+
+    @Override
+    public long[] lengths(long position) {
+        return new long[] { position };
+    }
+
+    @Override
+    public File location() {
+        return file;
+    }
+
+    @Override
+    public List<Slice> split(int parts) throws IOException {
+        long[] bounds = RecordScanner.splitLines(file, parts);
+        List<Slice> slices = new ArrayList<>(parts);
+        for (int k = 0; k < parts; k++) {
+            long from = bounds[k];
+            long to = bounds[k + 1];
+            if (from < to) {
+                slices.add(visitor -> scan(from, to, visitor));
+            }
+        }
+        return slices;
+    }
+
+    private void scan(long from, long to, OffenseVisitor visitor) throws IOException {
+        RecordScanner.scan(file, from, to, new RecordScanner.LineVisitor() {
+            // The previous line's ID, so runs of one person's lines share a String
+            private MappedByteBuffer lastBuf;
+            private int lastStart;
+            private int lastEnd;
+            private String last;
+
+            @Override
+            public void line(MappedByteBuffer buf, int start, int end) throws IOException {
+                // Format in demerits.txt is: id|offenseDate|points
+                int idEnd = RecordScanner.firstFieldEnd(buf, start, end);
+                if (idEnd == end) {
+                    return;
+                }
+                int dateEnd = RecordScanner.indexOf(buf, idEnd + 1, end, (byte) '|');
+                if (dateEnd < 0) {
+                    return;
+                }
+                int pointsEnd = RecordScanner.firstFieldEnd(buf, dateEnd + 1, end);
+                int day = RecordScanner.parseEpochDay(buf, idEnd + 1, dateEnd);
+                int points = RecordScanner.parseInt(buf, dateEnd + 1, pointsEnd);
+                if (day == RecordScanner.INVALID || points == RecordScanner.INVALID) {
+                    return; // a damaged line can never fall inside a window
+                }
+                if (last == null || buf != lastBuf
+                        || !RecordScanner.sameBytes(buf, start, idEnd, lastStart, lastEnd)) {
+                    last = RecordScanner.decode(buf, start, idEnd);
+                }
+                lastBuf = buf;
+                lastStart = start;
+                lastEnd = idEnd;
+                visitor.offense(last, day, points);
+            }
+        });
+    }
+
+    @Override
+    public long append(List<Offense> offenses, long[] epochDays) throws IOException {
+        StringBuilder out = new StringBuilder();
+        for (Offense o : offenses) {
+            out.append(o.getPersonId()).append('|').append(o.getOffenseDate()).append('|')
+                    .append(o.getPoints()).append(System.lineSeparator());
+        }
+        long ticket = wal.append(file, out.toString().getBytes(StandardCharsets.UTF_8));
+        remember();
+        return ticket;
+    }
+
+    @Override
+    public boolean isStale() {
+        return file.length() != seenLength || file.lastModified() != seenModified;
+    }
+
+    private void remember() {
+        seenLength = file.length();
+        seenModified = file.lastModified();
+    }
+}
@@ -0,0 +1,444 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log in front of the registry's data files (persons.txt, its
+ * change log, demerits.txt or the binary demerit columns).
+ *
+ * Every append to a data file goes through {@link #append(File, byte[])},
+ * which first logs the bytes together with the file and offset they are
+ * written at, then writes them to the file itself. Neither write is forced;
+ * {@link #append} returns a ticket, and a caller that wants to acknowledge the
+ * write calls {@link #awaitDurable(long)}, which returns once the log record is
+ * on disk. Concurrent callers share one FileChannel.force: the first to arrive
+ * forces for everybody whose record is already written, and when the previous
+ * force had company it first waits up to the commit delay for more writers to
+ * join. That way a burst of offenses costs a handful of fsyncs, not one each.
+ *
+ * The log ("registry.wal" in the data directory) is a series of records
+ *
+ *   int length | int crc32(payload) | payload
+ *
+ * where the payload is either a write (file, offset, bytes) or a checkpoint
+ * (the length of every data file at that point). A checkpoint forces the data
+ * files and starts the log over; it runs when the log passes
+ * {@link #CHECKPOINT_BYTES}, when data files are replaced wholesale
+ * (compaction) and on close.
+ *
+ * On open the log is replayed: each write record is written again at its
+ * offset, which is harmless if it had already landed, and a data file is cut
+ * back to the end of its last logged write, dropping any unacknowledged tail.
+ * Replay stops at the first record that is short or fails its CRC.
+ */
+final class WriteAheadLog implements Closeable {
+    static final String FILE_NAME = "registry.wal";
+    /** System property: how long (microseconds) a commit may wait for company. */
+    static final String COMMIT_DELAY_PROPERTY = "roadregistry.wal.commitDelayMicros";
+    static final long DEFAULT_COMMIT_DELAY_MICROS = 1000;
+    /** Checkpoint once the log is this large. */
+    static final long CHECKPOINT_BYTES = 16L * 1024 * 1024;
+
+    private static final byte WRITE = 1;
+    private static final byte CHECKPOINT = 2;
+
+    private final Path base;
+    private final File logFile;
+    private final FileChannel channel; // null when unlogged
+    private final long commitDelayNanos;
+    private final Thread shutdownHook;
+
+    // Guarded by this: the log position and the data files we know about.
+    // written is also read, without the lock, by committers.
+    private long logSize;
+    private volatile long written;
+    private final Map<String, File> targets = new LinkedHashMap<>();
+    private final Set<String> dirty = new LinkedHashSet<>();
+
+    // Guarded by commitLock.
+    private final Object commitLock = new Object();
+    private long durable;
+    private boolean forcing;
+    private int waiting;
+    private int lastBatch;
+    private long forces;
+
+    private WriteAheadLog(Path base, File logFile, FileChannel channel, long commitDelayNanos) {
+        this.base = base;
+        this.logFile = logFile;
+        this.channel = channel;
+        this.commitDelayNanos = commitDelayNanos;
+        this.shutdownHook = channel == null ? null : new Thread(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "registry-wal-shutdown");
+    }
+
+    /**
+     * A log that logs nothing: appends go straight to the data file and
+     * awaitDurable returns at once. Used where nothing is acknowledged to a
+     * user (tools, tests of the data structures).
+     */
+    static WriteAheadLog unlogged() {
+        return new WriteAheadLog(null, null, null, 0);
+    }
+
+    /**
+     * Opens (creating if needed) the log in dir, null meaning the working
+     * directory, replays whatever it holds and checkpoints.
+     */
+    static WriteAheadLog open(File dir) throws IOException {
+        long delayMicros = Long.getLong(COMMIT_DELAY_PROPERTY, DEFAULT_COMMIT_DELAY_MICROS);
+        return open(dir, delayMicros * 1000);
+    }
+
+    static WriteAheadLog open(File dir, long commitDelayNanos) throws IOException {
+        File baseDir = dir == null ? new File("").getAbsoluteFile() : dir.getAbsoluteFile();
+        File logFile = new File(baseDir, FILE_NAME);
+        FileChannel channel = FileChannel.open(logFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        WriteAheadLog wal = new WriteAheadLog(baseDir.toPath(), logFile, channel, commitDelayNanos);
+        try {
+            wal.recover();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        Runtime.getRuntime().addShutdownHook(wal.shutdownHook);
+        return wal;
+    }
+
+    File file() {
+        return logFile;
+    }
+
+    /** Number of FileChannel.force calls made for commits so far. */
+    long forceCount() {
+        synchronized (commitLock) {
+            return forces;
+        }
+    }
+
+    /**
+     * Logs the bytes, then appends them to the target file. Returns the ticket
+     * to pass to {@link #awaitDurable(long)}.
+     */
+    long append(File target, byte[] data) throws IOException {
+        if (data.length == 0) {
+            return 0;
+        }
+        if (channel == null) {
+            try (FileChannel out = FileChannel.open(target.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                writeFully(out, data, out.size());
+            }
+            return 0;
+        }
+        synchronized (this) {
+            String name = name(target);
+            try (FileChannel out = FileChannel.open(target.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long offset = out.size();
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length + name.length() + 16);
+                DataOutputStream payload = new DataOutputStream(bytes);
+                payload.writeByte(WRITE);
+                payload.writeUTF(name);
+                payload.writeLong(offset);
+                payload.write(data);
+                // 1) The log record first
+                writeRecord(bytes.toByteArray());
+                // 2) Only then the data itself
+                writeFully(out, data, offset);
+            }
+            targets.put(name, target);
+            dirty.add(name);
+            long ticket = ++written;
+            if (logSize > CHECKPOINT_BYTES) {
+                checkpointLocked();
+            }
+            return ticket;
+        }
+    }
+
+    /**
+     * Returns once the write with this ticket (and every earlier one) is on
+     * disk, forcing the log if nobody else is already doing so.
+     */
+    void awaitDurable(long ticket) throws IOException {
+        if (channel == null || ticket == 0) {
+            return;
+        }
+        synchronized (commitLock) {
+            waiting++;
+            try {
+                while (durable < ticket) {
+                    if (forcing) {
+                        commitLock.wait();
+                        continue;
+                    }
+                    forcing = true;
+                    try {
+                        if (lastBatch > 1 && commitDelayNanos > 0) {
+                            // Writers were arriving together last time; give them a moment to join.
+                            long deadline = System.nanoTime() + commitDelayNanos;
+                            long left;
+                            while ((left = deadline - System.nanoTime()) > 0) {
+                                commitLock.wait(left / 1_000_000, (int) (left % 1_000_000));
+                            }
+                        }
+                        long upTo = written;
+                        lastBatch = waiting;
+                        channel.force(false);
+                        forces++;
+                        RegistryMetrics.logForced();
+                        durable = Math.max(durable, upTo);
+                    } finally {
+                        forcing = false;
+                        commitLock.notifyAll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for the write-ahead log");
+            } finally {
+                waiting--;
+            }
+        }
+    }
+
+    /**
+     * Forces every data file written since the last checkpoint and starts the
+     * log over from their current lengths.
+     */
+    synchronized void checkpoint() throws IOException {
+        if (channel != null) {
+            checkpointLocked();
+        }
+    }
+
+    /**
+     * Moves each source file over its target, e.g. a compacted copy over the
+     * original. The sources are forced and the log is checkpointed first, so
+     * no logged offset ever points into a replaced file.
+     */
+    synchronized void replaceFiles(File[] sources, File[] targetFiles) throws IOException {
+        // A compaction can outlive the log when the data directory is switched.
+        boolean logged = channel != null && channel.isOpen();
+        if (logged) {
+            for (File source : sources) {
+                force(source);
+            }
+            checkpointLocked();
+        }
+        for (int i = 0; i < sources.length; i++) {
+            Files.move(sources[i].toPath(), targetFiles[i].toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (logged) {
+            forceDirectory(targetFiles[0].getAbsoluteFile().getParentFile());
+            for (File target : targetFiles) {
+                String name = name(target);
+                targets.put(name, target);
+                dirty.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Forces the data files and leaves an empty log behind, so nothing is
+     * replayed against files that change before the next open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        synchronized (this) {
+            if (!channel.isOpen()) {
+                return;
+            }
+            forceDirty();
+            channel.truncate(0);
+            channel.force(true);
+            channel.close();
+            logSize = 0;
+        }
+        synchronized (commitLock) {
+            durable = Math.max(durable, written);
+            commitLock.notifyAll();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // already shutting down
+            }
+        }
+    }
+
+    // --- recovery -------------------------------------------------------------
+
+    private synchronized void recover() throws IOException {
+        Map<String, Long> checkpointed = new HashMap<>();
+        Map<String, Long> ends = new HashMap<>();
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(logFile), 1 << 16))) {
+            long size = logFile.length();
+            while (good + 8 <= size) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || length > size - good - 8) {
+                    break; // torn tail
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 check = new CRC32();
+                check.update(payload, 0, length);
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+                replay(payload, checkpointed, ends);
+                good += 8 + length;
+            }
+        }
+
+        // Cut each data file back to the end of what was logged for it.
+        for (Map.Entry<String, Long> e : ends.entrySet()) {
+            long end = Math.max(e.getValue(), checkpointed.getOrDefault(e.getKey(), 0L));
+            File target = targets.get(e.getKey());
+            if (target.length() > end) {
+                try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+                    out.truncate(end);
+                }
+            }
+        }
+        logSize = good;
+        checkpointLocked();
+    }
+
+    private void replay(byte[] payload, Map<String, Long> checkpointed, Map<String, Long> ends)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        if (type == CHECKPOINT) {
+            checkpointed.clear();
+            ends.clear();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                checkpointed.put(name, in.readLong());
+                targets.put(name, resolve(name));
+            }
+            return;
+        }
+        if (type != WRITE) {
+            return;
+        }
+        String name = in.readUTF();
+        long offset = in.readLong();
+        int start = payload.length - in.available();
+        File target = resolve(name);
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        try (FileChannel out = FileChannel.open(target.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.wrap(payload, start, payload.length - start), offset);
+        }
+        targets.put(name, target);
+        dirty.add(name);
+        ends.merge(name, offset + payload.length - start, Math::max);
+    }
+
+    // --- helpers --------------------------------------------------------------
+
+    private void checkpointLocked() throws IOException {
+        forceDirty();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(CHECKPOINT);
+        payload.writeInt(targets.size());
+        for (Map.Entry<String, File> e : targets.entrySet()) {
+            payload.writeUTF(e.getKey());
+            payload.writeLong(e.getValue().length());
+        }
+        channel.truncate(0);
+        logSize = 0;
+        writeRecord(bytes.toByteArray());
+        channel.force(true);
+        synchronized (commitLock) {
+            durable = Math.max(durable, written);
+            commitLock.notifyAll();
+        }
+    }
+
+    private void forceDirty() throws IOException {
+        for (String name : dirty) {
+            force(targets.get(name));
+        }
+        dirty.clear();
+    }
+
+    private void writeRecord(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (record.hasRemaining()) {
+            logSize += channel.write(record, logSize);
+        }
+        RegistryMetrics.written(8 + payload.length);
+    }
+
+    private static void writeFully(FileChannel out, byte[] data, long offset) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        while (buf.hasRemaining()) {
+            offset += out.write(buf, offset);
+        }
+        RegistryMetrics.written(data.length);
+    }
+
+    private static void force(File f) throws IOException {
+        if (!f.exists()) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+    }
+
+    private static void forceDirectory(File dir) {
+        // Makes the rename durable on Linux; not supported everywhere, so best effort.
+        try (FileChannel ch = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /** Data files are logged relative to the data directory when inside it. */
+    private String name(File target) {
+        Path p = target.getAbsoluteFile().toPath().normalize();
+        return p.startsWith(base) ? base.relativize(p).toString() : p.toString();
+    }
+
+    private File resolve(String name) {
+        return base.resolve(name).toFile();
+    }
+}
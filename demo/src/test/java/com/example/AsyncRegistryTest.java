@@ -0,0 +1,120 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static com.example.TestData.idFor;
+import static com.example.TestData.person;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncRegistryTest {
+
+    @TempDir
+    File dir;
+
+    private AsyncRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        Person.useDataDirectory(dir);
+        registry = new AsyncRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        registry.close();
+        Person.useDataDirectory(null);
+    }
+
+    @Test
+    void testQueuedWrites_AreCoalescedAndKeepPerRequestResults() throws Exception {
+        // Hold the writer so everything below queues up behind it.
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> gate = registry.write(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        started.await();
+
+        List<CompletableFuture<Boolean>> added = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            added.add(registry.addPerson(person(i)));
+        }
+        CompletableFuture<Boolean> invalid = registry.addPerson(new Person("11abcdefGH", "X", "Y",
+                "1|Main St|Melbourne|Victoria|Australia", "01-01-2000"));
+        List<CompletableFuture<String>> offenses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            offenses.add(registry.addDemeritPoints(idFor(0), "0" + (i + 1) + "-01-2024", 3));
+        }
+        offenses.add(registry.addDemeritPoints(idFor(1), "not a date", 3));
+        long before = registry.batchesApplied();
+        release.countDown();
+
+        assertTrue(gate.get());
+        for (CompletableFuture<Boolean> f : added) {
+            assertTrue(f.get());
+        }
+        assertFalse(invalid.get());
+        assertEquals("Success", offenses.get(0).get());
+        assertEquals("Success", offenses.get(1).get());
+        assertEquals("Success", offenses.get(2).get());
+        assertEquals("Failed", offenses.get(3).get());
+        // 54 requests, one drain.
+        assertEquals(before + 1, registry.batchesApplied());
+
+        // Under 21 with 9 points: the third offense suspended them.
+        assertTrue(registry.isSuspended(idFor(0)).get());
+        assertFalse(registry.isSuspended(idFor(1)).get());
+    }
+
+    @Test
+    void testWritesAndReads_ManyInFlight() throws Exception {
+        List<CompletableFuture<Boolean>> added = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            added.add(registry.addPerson(person(i)));
+        }
+        CompletableFuture.allOf(added.toArray(new CompletableFuture[0])).get();
+
+        List<CompletableFuture<Boolean>> reads = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            reads.add(registry.isSuspended(idFor(i)));
+        }
+        for (CompletableFuture<Boolean> f : reads) {
+            assertFalse(f.get());
+        }
+        assertEquals(500, new PersonRegistry(new File(dir, "persons.txt")).size());
+    }
+
+    @Test
+    void testClose_AppliesQueuedWritesThenRejects() throws Exception {
+        CompletableFuture<Boolean> queued = registry.addPerson(person(7));
+        registry.close();
+        assertTrue(queued.isDone());
+        assertTrue(queued.get());
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> registry.addPerson(person(8)).get());
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void testVirtualThreads_UsedWhenRuntimeHasThem() {
+        boolean available = Runtime.version().feature() >= 21;
+        assertEquals(available, registry.usesVirtualThreads());
+    }
+}
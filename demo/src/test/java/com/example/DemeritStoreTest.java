@@ -0,0 +1,90 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DemeritStoreTest {
+
+    @TempDir
+    File dir;
+
+    private static final List<String> SAMPLE = Arrays.asList(
+            "34$%abXYZA|01-01-2023|4",
+            "34$%abXYZA|01-06-2024|3",
+            "23@#xyLMNO|01-01-2024|4",
+            "34$%abXYZA|01-12-2024|2",
+            "broken line",
+            "23@#xyLMNO|31-02-2024|4");
+
+    private static long day(String date) {
+        return LocalDate.parse(date, Person.DTF).toEpochDay();
+    }
+
+    @Test
+    void testImportExport_RoundTripsValidRecords() throws IOException {
+        File text = new File(dir, "demerits.txt");
+        Files.write(text.toPath(), SAMPLE, StandardCharsets.UTF_8);
+        File bin = new File(dir, "demerits.bin");
+
+        assertEquals(4, DemeritConverter.toBinary(text, bin));
+        File back = new File(dir, "back.txt");
+        assertEquals(4, DemeritConverter.toText(bin, back));
+
+        assertEquals(Arrays.asList(SAMPLE.get(0), SAMPLE.get(1), SAMPLE.get(2), SAMPLE.get(3)),
+                Files.readAllLines(back.toPath(), StandardCharsets.UTF_8));
+        // 4 records * 9 bytes of columns, plus two dictionary entries
+        assertEquals(4 * 9, new File(bin, "ids").length() + new File(bin, "days").length()
+                + new File(bin, "points").length());
+    }
+
+    @Test
+    void testIndex_SameTotalsOnBothBackends() throws IOException {
+        File text = new File(dir, "demerits.txt");
+        Files.write(text.toPath(), SAMPLE, StandardCharsets.UTF_8);
+        File bin = new File(dir, "demerits.bin");
+        DemeritConverter.toBinary(text, bin);
+
+        DemeritIndex onText = new DemeritIndex(new TextDemeritStore(text));
+        DemeritIndex onBinary = new DemeritIndex(new BinaryDemeritStore(bin));
+        onText.append("34$%abXYZA", "15-03-2024", day("15-03-2024"), 5);
+        onBinary.append("34$%abXYZA", "15-03-2024", day("15-03-2024"), 5);
+
+        long to = day("01-12-2024");
+        long from = LocalDate.ofEpochDay(to).minusYears(2).toEpochDay();
+        assertEquals(14, onText.pointsBetween("34$%abXYZA", from, to));
+        assertEquals(14, onBinary.pointsBetween("34$%abXYZA", from, to));
+        assertEquals(onText.pointsBetween("23@#xyLMNO", from, to),
+                onBinary.pointsBetween("23@#xyLMNO", from, to));
+
+        // A fresh index reads back what the first one appended.
+        assertEquals(14, new DemeritIndex(new BinaryDemeritStore(bin)).pointsBetween("34$%abXYZA", from, to));
+    }
+
+    @Test
+    void testBinaryStore_TornAppendIsCutOff() throws IOException {
+        File bin = new File(dir, "demerits.bin");
+        DemeritIndex index = new DemeritIndex(new BinaryDemeritStore(bin));
+        index.append("23#$abCDEF", "01-01-2024", day("01-01-2024"), 6);
+        try (RandomAccessFile ids = new RandomAccessFile(new File(bin, "ids"), "rw")) {
+            ids.seek(ids.length());
+            ids.write(new byte[] { 0, 0 });
+        }
+
+        BinaryDemeritStore reopened = new BinaryDemeritStore(bin);
+        assertEquals(6, new DemeritIndex(reopened).pointsBetween("23#$abCDEF",
+                day("01-01-2023"), day("01-01-2025")));
+        assertEquals(4, new File(bin, "ids").length());
+        assertEquals(1, reopened.size());
+    }
+}
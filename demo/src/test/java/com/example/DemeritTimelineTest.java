@@ -0,0 +1,65 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DemeritTimelineTest {
+
+    @Test
+    void testPointsBetween_InclusiveBounds() {
+        DemeritTimeline t = new DemeritTimeline();
+        t.add(100, 4);
+        t.add(200, 3);
+        t.add(300, 2);
+
+        assertEquals(9, t.pointsBetween(100, 300));
+        assertEquals(5, t.pointsBetween(101, 300));
+        assertEquals(7, t.pointsBetween(100, 299));
+        assertEquals(0, t.pointsBetween(301, 400));
+        assertEquals(0, t.pointsBetween(300, 100));
+    }
+
+    @Test
+    void testAdd_Backdated_KeepsSortedOrder() {
+        DemeritTimeline t = new DemeritTimeline();
+        t.add(300, 2);
+        t.add(100, 4);
+        t.add(200, 3);
+        t.add(200, 1);
+
+        assertEquals(100, t.dayAt(0));
+        assertEquals(200, t.dayAt(1));
+        assertEquals(3, t.pointsAt(1));
+        assertEquals(1, t.pointsAt(2));
+        assertEquals(300, t.dayAt(3));
+        assertEquals(10, t.totalPoints());
+    }
+
+    @Test
+    void testPointsBetween_RandomOrder_MatchesLinearScan() {
+        Random rnd = new Random(42);
+        DemeritTimeline t = new DemeritTimeline();
+        List<int[]> seen = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int day = 19000 + rnd.nextInt(2000);
+            int pts = 1 + rnd.nextInt(6);
+            t.add(day, pts);
+            seen.add(new int[] { day, pts });
+
+            int to = 19000 + rnd.nextInt(2000);
+            int from = to - 730;
+            int expected = 0;
+            for (int[] e : seen) {
+                if (e[0] >= from && e[0] <= to) {
+                    expected += e[1];
+                }
+            }
+            assertEquals(expected, t.pointsBetween(from, to));
+        }
+    }
+}
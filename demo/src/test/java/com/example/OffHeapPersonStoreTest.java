@@ -0,0 +1,127 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapPersonStoreTest {
+
+    @TempDir
+    File dir;
+
+    private static String row(int i) {
+        return "2" + (char) ('2' + i % 8) + "@#" + String.format("%04d", i % 10_000) + "ZZ|First" + i + "|Last" + i
+                + "|" + i + "|Street " + (i % 50) + "|City " + (i % 7) + "|Victoria|Australia|01-01-2000|"
+                + (i % 3 == 0);
+    }
+
+    @Test
+    void testLinesAndRecords_RoundTripExactly() {
+        List<String> lines = Arrays.asList(
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2010|true",
+                "",
+                "no pipes at all",
+                "23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|01-01-2000|false", // short address
+                "23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|1-1-2000|false",
+                "23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|TRUE",
+                "56s_d%&fAB|Émilie|Ng||Main St|Melbourne|Victoria|Australia|29-02-2000|false");
+        OffHeapPersonStore store = new OffHeapPersonStore();
+        for (String line : lines) {
+            store.add(line);
+        }
+        for (int row = 0; row < lines.size(); row++) {
+            String line = lines.get(row);
+            assertEquals(line, store.line(row));
+            PersonRecord expected = PersonRecord.parse(line);
+            PersonRecord actual = store.record(row);
+            if (expected == null) {
+                assertNull(actual);
+                continue;
+            }
+            assertEquals(expected.toLine(), actual.toLine());
+        }
+        assertEquals(5, store.ids());
+    }
+
+    @Test
+    void testIndex_FollowsRowsAcrossIdChanges() {
+        OffHeapPersonStore store = new OffHeapPersonStore();
+        store.add("A|1");
+        store.add("B|1");
+        store.add("A|2");
+        store.add("A|3");
+        assertArrayEquals(new int[] { 0, 2, 3 }, store.rows("A"));
+
+        store.set(2, "B|2");
+        assertArrayEquals(new int[] { 0, 3 }, store.rows("A"));
+        assertArrayEquals(new int[] { 1, 2 }, store.rows("B"));
+        store.set(0, "C|1");
+        store.set(3, "C|2");
+        assertEquals(-1, store.firstRow("A"));
+        assertEquals(-1, store.lastRow("A"));
+        assertArrayEquals(new int[] { 0, 3 }, store.rows("C"));
+        assertEquals(3, store.lastRow("C"));
+        assertEquals(2, store.ids());
+
+        Set<String> lasts = new HashSet<>();
+        store.forEachLastRow(row -> lasts.add(store.line(row)));
+        assertEquals(new HashSet<>(Arrays.asList("B|2", "C|2")), lasts);
+    }
+
+    @Test
+    void testManyRows_StayCompactThroughRewrites() {
+        OffHeapPersonStore store = new OffHeapPersonStore();
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            store.add(row(i));
+        }
+        // Rewrite every row a few times; replaced text is reclaimed along the way.
+        for (int pass = 0; pass < 4; pass++) {
+            for (int i = 0; i < n; i++) {
+                store.set(i, PersonRegistry.withSuspended(row(i), pass % 2 == 0));
+            }
+        }
+        assertEquals(10_000, store.ids());
+        // 50 streets, 7 cities, one state, one country
+        assertEquals(59, store.dictionarySize());
+        for (int i = 0; i < n; i += 997) {
+            assertEquals(PersonRegistry.withSuspended(row(i), false), store.line(i));
+        }
+        assertEquals(10, store.rows(PersonRecord.keyOf(row(1234))).length);
+        // Slot, text, index and chunk slack together, well under the ~300 bytes a row costs as Strings.
+        assertTrue(store.offHeapBytes() / n < 160, "bytes per row " + store.offHeapBytes() / n);
+    }
+
+    @Test
+    void testRegistryFind_ServesHotIdsFromCache() throws IOException {
+        File file = new File(dir, "persons.txt");
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(row(i));
+        }
+        Files.write(file.toPath(), rows, StandardCharsets.UTF_8);
+        PersonRegistry registry = new PersonRegistry(file);
+        String id = PersonRecord.keyOf(row(1));
+
+        RegistryMetrics metrics = RegistryMetrics.get();
+        long hits = metrics.getPersonCacheHits();
+        assertFalse(registry.find(id).suspended);
+        assertFalse(registry.find(id).suspended);
+        assertEquals(hits + 1, metrics.getPersonCacheHits());
+
+        // A write drops the cached record.
+        registry.setSuspended(id, true);
+        assertTrue(registry.find(id).suspended);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.TestData.idFor;
+import static com.example.TestData.person;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersonConcurrencyTest {
+
+    private static final int PERSONS = 16;
+    private static final int THREADS = 8;
+    private static final int OFFENSES_PER_THREAD = 200;
+
+    @TempDir
+    File dir;
+
+    @BeforeEach
+    void isolate() {
+        Person.useDataDirectory(dir);
+    }
+
+    @AfterEach
+    void restore() {
+        Person.useDataDirectory(null);
+    }
+
+    @Test
+    void testConcurrentDemeritsAndUpdates_NoLostWrites() throws Exception {
+        for (int i = 0; i < PERSONS; i++) {
+            assertTrue(Person.addPerson(new Person(idFor(i), "First", "Last",
+                    "1|Main St|Melbourne|Victoria|Australia", "01-01-1990")));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<int[]>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int seed = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                int[] accepted = new int[PERSONS];
+                for (int k = 0; k < OFFENSES_PER_THREAD; k++) {
+                    int p = (seed * 7 + k) % PERSONS;
+                    // Only half the persons get enough points to cross the adult threshold of 12.
+                    if (p % 2 == 1 && accepted[p] >= 1) {
+                        continue;
+                    }
+                    if ("Success".equals(Person.addDemeritPoints(idFor(p), "01-06-2024", 1))) {
+                        accepted[p]++;
+                    }
+                    // Detail edits race with the suspension flips on the same rows.
+                    Person.updatePersonalDetails(new Person(idFor(p), "First" + (k % 3), "Last",
+                            "1|Main St|Melbourne|Victoria|Australia", "01-01-1990"));
+                }
+                return accepted;
+            }));
+        }
+        start.countDown();
+
+        int[] perPerson = new int[PERSONS];
+        for (Future<int[]> f : futures) {
+            int[] accepted = f.get(60, TimeUnit.SECONDS);
+            for (int p = 0; p < PERSONS; p++) {
+                perPerson[p] += accepted[p];
+            }
+        }
+        pool.shutdown();
+
+        // Every acknowledged offense is on disk, exactly once.
+        List<String> demerits = Files.readAllLines(new File(dir, "demerits.txt").toPath(),
+                StandardCharsets.UTF_8);
+        int total = 0;
+        for (int p = 0; p < PERSONS; p++) {
+            total += perPerson[p];
+        }
+        assertEquals(total, demerits.size());
+
+        // The threshold held for everybody, and no detail edit wiped out a flip.
+        PersonRegistry reopened = new PersonRegistry(new File(dir, "persons.txt"));
+        for (int p = 0; p < PERSONS; p++) {
+            PersonRecord record = reopened.find(idFor(p));
+            assertEquals(perPerson[p] > 12, record.suspended, "suspension of " + idFor(p));
+            assertEquals(1, reopened.linesFor(idFor(p)).size());
+        }
+    }
+
+    @Test
+    void testConcurrentAddPersons_AllRowsWritten() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < PERSONS * 8; i++) {
+            final int n = i;
+            futures.add(pool.submit(() -> assertTrue(Person.addPerson(person(n)))));
+        }
+        for (Future<?> f : futures) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(PERSONS * 8, new PersonRegistry(new File(dir, "persons.txt")).size());
+    }
+
+    @Test
+    void testStripedLocks_DifferentKeysSpreadOut() {
+        StripedLocks locks = new StripedLocks(100);
+        Set<Integer> stripes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            int stripe = locks.stripeOf(idFor(i));
+            assertTrue(stripe >= 0 && stripe < 128);
+            stripes.add(stripe);
+        }
+        assertTrue(stripes.size() > 64, "1000 IDs on only " + stripes.size() + " of 128 stripes");
+    }
+
+    @Test
+    void testStripedLocks_LockAllExcludesSingleKeyWriters() throws Exception {
+        StripedLocks locks = new StripedLocks(16);
+        CountDownLatch entered = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> writer;
+        locks.lockAll();
+        try {
+            writer = pool.submit(() -> {
+                locks.lock(idFor(3));
+                try {
+                    entered.countDown();
+                } finally {
+                    locks.unlock(idFor(3));
+                }
+            });
+            assertFalse(entered.await(200, TimeUnit.MILLISECONDS), "writer got in while every stripe was held");
+        } finally {
+            locks.unlockAll();
+        }
+        assertTrue(entered.await(10, TimeUnit.SECONDS), "writer still blocked after unlockAll");
+        writer.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+    }
+}
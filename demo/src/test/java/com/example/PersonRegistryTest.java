@@ -0,0 +1,142 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersonRegistryTest {
+
+    @TempDir
+    File dir;
+
+    private File write(String... lines) throws IOException {
+        File f = new File(dir, "persons.txt");
+        Files.write(f.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return f;
+    }
+
+    @Test
+    void testFind_DuplicateIds_ReturnsNewestRow() throws IOException {
+        File f = write(
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2005|true",
+                "23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|false",
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2005|false");
+        PersonRegistry registry = new PersonRegistry(f);
+
+        PersonRecord tom = registry.find("34$%abXYZA");
+        assertFalse(tom.suspended);
+        assertEquals("20|King St|Melbourne|Victoria|Australia", tom.address);
+        assertEquals(2, registry.linesFor("34$%abXYZA").size());
+        assertNull(registry.find("99!!zzAAAA"));
+    }
+
+    @Test
+    void testAppend_NewRowForCachedId_IsWhatFindReturns() throws IOException {
+        File f = write(
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2005|true");
+        PersonRegistry registry = new PersonRegistry(f);
+        assertTrue(registry.find("34$%abXYZA").suspended); // now cached
+
+        registry.append("34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-1990|false");
+
+        PersonRecord tom = registry.find("34$%abXYZA");
+        assertFalse(tom.suspended);
+        assertEquals("01-01-1990", tom.birthDate);
+        assertEquals(new PersonRegistry(f).find("34$%abXYZA").suspended, tom.suspended);
+    }
+
+    @Test
+    void testSetSuspended_RewritesEveryRowForId() throws IOException {
+        File f = write(
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2005|false",
+                "23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|false",
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2005|false");
+        PersonRegistry registry = new PersonRegistry(f);
+
+        registry.setSuspended("34$%abXYZA", true);
+
+        // The flip goes to the change log; the base file is untouched until compaction.
+        assertTrue(Files.readAllLines(f.toPath(), StandardCharsets.UTF_8).get(0).endsWith("|false"));
+        assertEquals(2, registry.pendingChanges());
+        assertTrue(registry.find("34$%abXYZA").suspended);
+        assertTrue(new PersonRegistry(f).find("34$%abXYZA").suspended);
+
+        registry.compact();
+
+        List<String> onDisk = Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+        assertTrue(onDisk.get(0).endsWith("|true"));
+        assertTrue(onDisk.get(1).endsWith("|false"));
+        assertTrue(onDisk.get(2).endsWith("|true"));
+        assertEquals(0, registry.pendingChanges());
+        assertEquals(0, registry.logFile().length());
+    }
+
+    @Test
+    void testCompact_NonAsciiRows_StayUtf8() throws IOException {
+        String zoe = "23#$abCDEF|Zoë|Ñúñez|123|Main St|Melbourne|Victoria|Australia|01-01-2000|false";
+        String renee = "34$%abXYZA|Renée|Søren|20|King St|Melbourne|Victoria|Australia|01-01-2005|false";
+        File f = write(zoe, renee);
+        PersonRegistry registry = new PersonRegistry(f);
+        registry.setSuspended("23#$abCDEF", true);
+        registry.replace("34$%abXYZA", Collections.singletonList(renee.replace("Søren", "Ødegård")));
+
+        // Replayed from the change log, then folded into the base file.
+        assertEquals("Ødegård", new PersonRegistry(f).find("34$%abXYZA").lastName);
+        registry.compact();
+
+        List<String> onDisk = Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+        assertEquals(zoe.replace("|false", "|true"), onDisk.get(0));
+        assertEquals(renee.replace("Søren", "Ødegård"), onDisk.get(1));
+        PersonRecord reopened = new PersonRegistry(f).find("23#$abCDEF");
+        assertEquals("Zoë", reopened.firstName);
+        assertEquals("Ñúñez", reopened.lastName);
+    }
+
+    @Test
+    void testReplay_LastWriteWins() throws IOException {
+        File f = write("23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|false");
+        PersonRegistry registry = new PersonRegistry(f);
+        registry.setSuspended("23#$abCDEF", true);
+        registry.setSuspended("23#$abCDEF", false);
+        registry.setSuspended("23#$abCDEF", true);
+
+        PersonRegistry reopened = new PersonRegistry(f);
+        assertTrue(reopened.find("23#$abCDEF").suspended);
+        assertEquals(1, reopened.size());
+        assertEquals(3, reopened.pendingChanges());
+    }
+
+    @Test
+    void testReplace_ChangedId_ReindexesRow() throws IOException {
+        File f = write("33@@xyZZAB|Odd|Id|1|First St|Melbourne|Victoria|Australia|01-01-1990|false");
+        PersonRegistry registry = new PersonRegistry(f);
+
+        registry.replace("33@@xyZZAB", Collections.singletonList(
+                "35@@xyZZAB|Odd|Id|1|First St|Melbourne|Victoria|Australia|01-01-1990|false"));
+
+        assertNull(registry.find("33@@xyZZAB"));
+        assertNotNull(registry.find("35@@xyZZAB"));
+    }
+
+    @Test
+    void testFind_FileChangedExternally_Reloads() throws IOException {
+        File f = write("23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|false");
+        PersonRegistry registry = new PersonRegistry(f);
+        assertNull(registry.find("56##ghIJKL"));
+
+        Files.write(f.toPath(), Collections.singletonList(
+                "56##ghIJKL|Carol|Lee|77|Pine Ave|Melbourne|Victoria|Australia|01-01-1990|false"),
+                StandardCharsets.UTF_8, java.nio.file.StandardOpenOption.APPEND);
+
+        assertNotNull(registry.find("56##ghIJKL"));
+    }
+}
@@ -1,10 +1,26 @@
 package com.example;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class PersonTest {
 
+    @AfterEach
+    void tearDown() {
+        Person.useDataDirectory(null);
+    }
+
     @Test
     void testAddPerson_ValidData_ReturnsTrue() {
         Person p = new Person("23#$abCDEF", "Alice", "Smith",
@@ -91,4 +107,82 @@ class PersonTest {
         assertEquals("Success", result);
     }
 
+    @Test
+    void testAddPersons_MixedBatch_SameOutcomesAsAddPerson(@TempDir File batchRoot, @TempDir File oneRoot) {
+        List<Person> batch = Arrays.asList(
+                new Person("23#$abCDEF", "Alice", "Smith",
+                        "123|Main St|Melbourne|Victoria|Australia", "01-01-2000"),
+                new Person("12abcdefGH", "Bob", "Jones",
+                        "10|Oak Rd|Melbourne|Victoria|Australia", "31-12-1999"),
+                new Person("56##ghIJKL", "Carol", "Lee",
+                        "77|Pine Ave|Melbourne|Victoria|Australia", "30-02-2010"),
+                new Person("77!!qqRSTU", "Dan", "Wu",
+                        "9|Bay Rd|Sydney|NSW|Australia", "01-01-1990"));
+
+        Person.useDataDirectory(batchRoot);
+        ImportReport report = Person.addPersons(batch.stream());
+        Person.useDataDirectory(oneRoot);
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(Person.addPerson(batch.get(i)), report.isAccepted(i));
+        }
+
+        assertEquals(4, report.size());
+        assertTrue(report.isAccepted(0));
+        assertFalse(report.isAccepted(1));
+        assertFalse(report.isAccepted(2));
+        assertFalse(report.isAccepted(3));
+        assertEquals(1, report.acceptedCount());
+        assertEquals(3, report.rejected().size());
+    }
+
+    @Test
+    void testAddDemeritsBatch_SameResultsAsOneAtATime(@TempDir File batchRoot, @TempDir File oneRoot)
+            throws IOException {
+        List<Person> persons = Arrays.asList(
+                new Person("23@#xyLMNO", "Young", "Driver", "1|High St|Melbourne|Victoria|Australia", "01-01-2008"),
+                new Person("23#$abCDEF", "Alice", "Smith", "123|Main St|Melbourne|Victoria|Australia", "01-01-1990"));
+        // Both persons cross their threshold part way through
+        List<Offense> offenses = Arrays.asList(
+                new Offense("23@#xyLMNO", "01-02-2024", 3),
+                new Offense("23@#xyLMNO", "31-02-2024", 2),
+                new Offense("23#$abCDEF", "15-03-2024", 6),
+                new Offense("99!!noSUCH", "15-07-2024", 3),
+                new Offense("23@#xyLMNO", "01-05-2024", 4),
+                new Offense("23#$abCDEF", "15-07-2024", 5),
+                new Offense("23#$abCDEF", "15-07-2024", 7),
+                new Offense("23#$abCDEF", "16-07-2024", 2));
+
+        List<Object> batch;
+        List<Object> oneAtATime;
+        try {
+            Person.useDataDirectory(batchRoot);
+            Person.addPersons(persons);
+            batch = new ArrayList<>(Person.addDemeritPoints(offenses));
+            batch.addAll(outcome(batchRoot));
+
+            Person.useDataDirectory(oneRoot);
+            Person.addPersons(persons);
+            oneAtATime = new ArrayList<>();
+            for (Offense o : offenses) {
+                oneAtATime.add(Person.addDemeritPoints(o.getPersonId(), o.getOffenseDate(), o.getPoints()));
+            }
+            oneAtATime.addAll(outcome(oneRoot));
+        } finally {
+            Person.useDataDirectory(null);
+        }
+
+        assertEquals(oneAtATime, batch);
+        assertEquals(Arrays.asList("Success", "Failed", "Success", "Failed", "Success", "Success", "Failed",
+                "Success", true, true), batch.subList(0, offenses.size() + 2));
+    }
+
+    /** What a run left behind: the suspension flags and the stored offenses. */
+    private static List<Object> outcome(File root) throws IOException {
+        List<Object> out = new ArrayList<>();
+        out.add(Person.isSuspended("23@#xyLMNO"));
+        out.add(Person.isSuspended("23#$abCDEF"));
+        out.addAll(Files.readAllLines(new File(root, Person.DEMERITS_FILE).toPath(), StandardCharsets.UTF_8));
+        return out;
+    }
+
 }
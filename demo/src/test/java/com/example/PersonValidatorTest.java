@@ -0,0 +1,108 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersonValidatorTest {
+
+    // The rules as Person originally wrote them; the validator must agree exactly.
+    private static final Pattern ID = Pattern.compile(
+            "^(?=.{10}$)(?=.*[^A-Za-z0-9].*[^A-Za-z0-9])[2-9]{2}.{6}[A-Z]{2}$");
+
+    private static boolean regexAddress(String address) {
+        String[] addrParts = address.split("\\|");
+        return addrParts.length == 5 && addrParts[3].equals("Victoria");
+    }
+
+    private static boolean formatterDate(String date) {
+        try {
+            LocalDate.parse(date, Person.DTF);
+            return true;
+        } catch (DateTimeParseException ex) {
+            return false;
+        }
+    }
+
+    private static String randomFrom(Random rnd, String[] pieces, int min, int max) {
+        StringBuilder sb = new StringBuilder();
+        int n = min + rnd.nextInt(max - min + 1);
+        for (int i = 0; i < n; i++) {
+            sb.append(pieces[rnd.nextInt(pieces.length)]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testCheckId_FuzzAgreesWithRegex() {
+        String[] pieces = { "2", "5", "9", "1", "0", "A", "Z", "a", "q", "#", "$", "@", "|", " ",
+                "\n", "\r", "\u0085", "\u2028", "é", "😀", "\uD83D", "B", "M" };
+        Random rnd = new Random(1234);
+        int accepted = 0;
+        for (int i = 0; i < 200_000; i++) {
+            String id = randomFrom(rnd, pieces, 8, 12);
+            if (rnd.nextInt(4) == 0) {
+                // Bias towards the valid shape so the accept path is exercised too.
+                id = (2 + rnd.nextInt(8)) + "" + (2 + rnd.nextInt(8))
+                        + randomFrom(rnd, pieces, 6, 6) + (char) ('A' + rnd.nextInt(26)) + (char) ('A' + rnd.nextInt(26));
+            }
+            boolean expected = ID.matcher(id).matches();
+            accepted += expected ? 1 : 0;
+            assertEquals(expected, PersonValidator.checkId(id).isValid(), id);
+        }
+        assertTrue(accepted > 1000);
+    }
+
+    @Test
+    void testCheckAddress_FuzzAgreesWithSplit() {
+        String[] pieces = { "|", "|", "Victoria", "NSW", "1", "Main St", "Melbourne", "", "Victori", "a" };
+        Random rnd = new Random(99);
+        for (int i = 0; i < 100_000; i++) {
+            String address = randomFrom(rnd, pieces, 0, 12);
+            assertEquals(regexAddress(address), PersonValidator.checkAddress(address).isValid(), address);
+        }
+        assertTrue(PersonValidator.checkAddress("|||Victoria|x||").isValid());
+        assertEquals(PersonValidator.Reason.ADDRESS_PARTS, PersonValidator.checkAddress("a|b|c|Victoria|"));
+    }
+
+    @Test
+    void testCheckBirthDate_FuzzAgreesWithFormatter() {
+        String[] pieces = { "0", "1", "2", "3", "9", "-", "+", "/", " " };
+        Random rnd = new Random(5);
+        for (int i = 0; i < 100_000; i++) {
+            String date;
+            if (rnd.nextBoolean()) {
+                date = randomFrom(rnd, pieces, 8, 13);
+            } else {
+                date = String.format("%02d-%02d-", rnd.nextInt(40), rnd.nextInt(15))
+                        + randomFrom(rnd, pieces, 3, 7);
+            }
+            assertEquals(formatterDate(date), PersonValidator.checkBirthDate(date).isValid(), date);
+        }
+        for (String d : new String[] { "29-02-2000", "29-02-1900", "29-02-2024", "31-04-2024",
+                "00-01-2024", "01-13-2024", "01-01-0000", "01-01-+10000", "01-01--0001", "01-01-10000" }) {
+            assertEquals(formatterDate(d), PersonValidator.checkBirthDate(d).isValid(), d);
+        }
+    }
+
+    @Test
+    void testValidate_ReportsFirstFailingRule() {
+        assertEquals(PersonValidator.Reason.VALID, PersonValidator.validate(
+                "23#$abCDEF", "123|Main St|Melbourne|Victoria|Australia", "01-01-2000"));
+        assertEquals(PersonValidator.Reason.ID_PREFIX, PersonValidator.validate(
+                "12abcdefGH", "10|Oak Rd|Melbourne|Victoria|Australia", "31-12-1999"));
+        assertEquals(PersonValidator.Reason.ID_SPECIAL_CHARS, PersonValidator.validate(
+                "23abcdefGH", "10|Oak Rd|Melbourne|Victoria|Australia", "31-12-1999"));
+        assertEquals(PersonValidator.Reason.ID_LENGTH, PersonValidator.validate(
+                "33@@xyZZ", "1|First St|Melbourne|Victoria|Australia", "01-01-2010"));
+        assertEquals(PersonValidator.Reason.ADDRESS_STATE, PersonValidator.validate(
+                "77!!qqRSTU", "9|Bay Rd|Sydney|NSW|Australia", "01-01-1990"));
+        assertEquals(PersonValidator.Reason.BIRTH_DATE, PersonValidator.validate(
+                "56##ghIJKL", "77|Pine Ave|Melbourne|Victoria|Australia", "30-02-2010"));
+    }
+}
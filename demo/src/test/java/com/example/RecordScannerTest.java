@@ -0,0 +1,101 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordScannerTest {
+
+    @TempDir
+    File dir;
+
+    private File write(String content) throws IOException {
+        File f = new File(dir, "data.txt");
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    @Test
+    void testScan_MixedLineEnds_SameAsReadLine() throws IOException {
+        File f = write("a|1\nb|2\r\nc|3\rd|4");
+        List<String> seen = new ArrayList<>();
+        RecordScanner.scan(f, (buf, start, end) -> seen.add(RecordScanner.decode(buf, start, end)));
+
+        List<String> expected = new ArrayList<>();
+        try (java.io.BufferedReader r = new java.io.BufferedReader(new java.io.FileReader(f))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                expected.add(line);
+            }
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void testPersonFields_AddressWithPipes() throws IOException {
+        String row = "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2005|true";
+        File f = write(row + "\n");
+        RecordScanner.scan(f, (buf, start, end) -> {
+            int[] cuts = new int[5];
+            assertTrue(RecordScanner.personFields(buf, start, end, cuts));
+            assertTrue(RecordScanner.matches(buf, start, cuts[0], "34$%abXYZA"));
+            assertEquals("20|King St|Melbourne|Victoria|Australia",
+                    RecordScanner.decode(buf, cuts[2] + 1, cuts[3]));
+            assertEquals(LocalDate.of(2005, 1, 1).toEpochDay(),
+                    RecordScanner.parseEpochDay(buf, cuts[3] + 1, cuts[4]));
+            assertEquals("true", RecordScanner.decode(buf, cuts[4] + 1, end));
+        });
+    }
+
+    @Test
+    void testParseEpochDay_AgreesWithStrictFormatter() throws IOException {
+        Random rnd = new Random(7);
+        StringBuilder sb = new StringBuilder();
+        List<String> dates = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String d = String.format("%02d-%02d-%04d", rnd.nextInt(33), rnd.nextInt(14), 1890 + rnd.nextInt(220));
+            dates.add(d);
+            sb.append(d).append('\n');
+        }
+        dates.add("29-02-2000");
+        dates.add("29-02-1900");
+        dates.add("1-1-2000");
+        dates.add("aa-bb-cccc");
+        for (String d : dates.subList(2000, dates.size())) {
+            sb.append(d).append('\n');
+        }
+        File f = write(sb.toString());
+        int[] i = { 0 };
+        RecordScanner.scan(f, (buf, start, end) -> {
+            String d = dates.get(i[0]++);
+            int expected;
+            try {
+                expected = (int) LocalDate.parse(d, Person.DTF).toEpochDay();
+            } catch (DateTimeParseException ex) {
+                expected = RecordScanner.INVALID;
+            }
+            assertEquals(expected, RecordScanner.parseEpochDay(buf, start, end), d);
+        });
+        assertEquals(dates.size(), i[0]);
+    }
+
+    @Test
+    void testParseInt_MatchesIntegerParseInt() throws IOException {
+        File f = write("4\n+3\n-2\n\nx\n12a\n99999999999\n");
+        List<Integer> seen = new ArrayList<>();
+        RecordScanner.scan(f, (buf, start, end) -> seen.add(RecordScanner.parseInt(buf, start, end)));
+        int bad = RecordScanner.INVALID;
+        assertEquals(java.util.Arrays.asList(4, 3, -2, bad, bad, bad, bad), seen);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistryMetricsTest {
+
+    @TempDir
+    File dir;
+
+    private final RegistryMetrics metrics = RegistryMetrics.get();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.write(new File(dir, "persons.txt").toPath(), Arrays.asList(
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2010|false"),
+                StandardCharsets.UTF_8);
+        Person.useDataDirectory(dir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Person.useDataDirectory(null);
+    }
+
+    @Test
+    void testAddPerson_CountsCallsRejectionsAndIo() {
+        OperationStats addPerson = metrics.operation(RegistryMetrics.Operation.ADD_PERSON);
+        long calls = addPerson.getCalls();
+        long written = addPerson.getBytesWritten();
+        long lines = addPerson.getLinesScanned();
+        long badPrefix = metrics.rejections(PersonValidator.Reason.ID_PREFIX);
+
+        assertFalse(Person.addPerson(new Person("11@#abCDEF", "A", "B",
+                "1|Main St|Melbourne|Victoria|Australia", "01-01-2000")));
+        assertTrue(Person.addPerson(new Person("23#$abCDEF", "Alice", "Smith",
+                "123|Main St|Melbourne|Victoria|Australia", "01-01-2000")));
+
+        assertEquals(calls + 2, addPerson.getCalls());
+        assertEquals(badPrefix + 1, metrics.rejections(PersonValidator.Reason.ID_PREFIX));
+        // The first write loaded the one-line file, then logged and appended one row.
+        assertEquals(lines + 1, addPerson.getLinesScanned());
+        assertTrue(addPerson.getBytesWritten() > written);
+        assertTrue(addPerson.getMaxMicros() > 0);
+    }
+
+    @Test
+    void testAddDemeritPoints_CountsFlipsAndOffenseRejections() {
+        long applied = metrics.getSuspensionsApplied();
+        long rejected = metrics.getOffenseRejections();
+        long forces = metrics.getLogForces();
+
+        assertEquals("Failed", Person.addDemeritPoints("34$%abXYZA", "2024-01-01", 3));
+        assertEquals("Failed", Person.addDemeritPoints("99!!zzAAAA", "01-01-2024", 3));
+        assertEquals("Success", Person.addDemeritPoints("34$%abXYZA", "01-01-2024", 6));
+        assertEquals("Success", Person.addDemeritPoints("34$%abXYZA", "02-01-2024", 1));
+
+        assertEquals(rejected + 2, metrics.getOffenseRejections());
+        assertEquals(applied + 1, metrics.getSuspensionsApplied());
+        assertTrue(metrics.getLogForces() > forces);
+    }
+
+    @Test
+    void testMBeans_AreRegistered() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(RegistryMetrics.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        assertNotNull(server.getAttribute(name, "RejectionsByRule"));
+
+        Person.addDemeritPoints("34$%abXYZA", "01-01-2024", 1);
+        ObjectName op = new ObjectName(RegistryMetrics.OBJECT_NAME + ",operation=addDemeritPoints");
+        assertTrue((Long) server.getAttribute(op, "Calls") > 0);
+    }
+
+    @Test
+    void testReporter_PrintsEveryOperation() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MetricsReporter.printingTo(new PrintStream(out, true)).report(metrics);
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        for (RegistryMetrics.Operation op : RegistryMetrics.Operation.values()) {
+            assertTrue(text.contains(op.label() + " calls="), text);
+        }
+    }
+
+    @Test
+    void testHistogram_PercentilesWithinBucketError() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            h.record(v * 1000);
+        }
+        assertEquals(100_000, h.count());
+        assertEquals(100_000_000, h.max());
+        long p50 = h.percentile(0.5);
+        long p99 = h.percentile(0.99);
+        assertTrue(p50 >= 50_000_000 && p50 <= 50_000_000 * 1.25, "p50 " + p50);
+        assertTrue(p99 >= 99_000_000 && p99 <= 100_000_000, "p99 " + p99);
+    }
+
+    @Test
+    void testHistogram_BucketsCoverEveryValueInOrder() {
+        long[] samples = { 0, 1, 3, 4, 5, 7, 8, 15, 16, 1000, 1 << 20, Long.MAX_VALUE / 3, Long.MAX_VALUE };
+        int previous = -1;
+        for (long v : samples) {
+            int b = LatencyHistogram.bucketOf(v);
+            assertTrue(b >= previous, "bucket order at " + v);
+            assertTrue(LatencyHistogram.lowerBound(b) <= v && v <= LatencyHistogram.upperBound(b),
+                    "bounds at " + v);
+            previous = b;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.TestData.idFor;
+import static com.example.TestData.person;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistryShardsTest {
+
+    private static final int SHARDS = 4;
+
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(RegistryShards.SHARDS_PROPERTY);
+        Person.useDataDirectory(null);
+    }
+
+    private void assertEveryLineInItsShard(String name) throws IOException {
+        for (int i = 0; i < SHARDS; i++) {
+            File file = new File(RegistryShards.shardDir(dir, i), name);
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                assertEquals(i, RegistryShards.shardOf(PersonRecord.keyOf(line), SHARDS), line);
+            }
+        }
+    }
+
+    @Test
+    void testNewRoot_WritesGoToTheIdsShard() throws IOException {
+        System.setProperty(RegistryShards.SHARDS_PROPERTY, Integer.toString(SHARDS));
+        Person.useDataDirectory(dir);
+
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            persons.add(person(i));
+        }
+        assertEquals(200, Person.addPersons(persons).acceptedCount());
+        assertTrue(new File(dir, RegistryShards.MANIFEST).exists());
+        List<Offense> offenses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            offenses.add(new Offense(idFor(i), "01-01-2024", 4));
+            offenses.add(new Offense(idFor(i), "01-02-2024", i % 2 == 0 ? 4 : 1));
+        }
+        Person.addDemeritPoints(offenses);
+
+        assertEveryLineInItsShard("persons.txt");
+        assertEveryLineInItsShard("demerits.txt");
+        assertFalse(new File(dir, "persons.txt").exists());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i % 2 == 0, Person.isSuspended(idFor(i)), idFor(i));
+        }
+
+        // A single update only touches its own shard's change log.
+        long[] before = new long[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            before[i] = new File(RegistryShards.shardDir(dir, i), "persons.txt.log").length();
+        }
+        assertTrue(Person.updatePersonalDetails(new Person(idFor(3), "New", "Name",
+                "3|Main St|Melbourne|Victoria|Australia", "01-01-2008")));
+        int grown = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            if (new File(RegistryShards.shardDir(dir, i), "persons.txt.log").length() > before[i]) {
+                grown++;
+            }
+        }
+        assertEquals(1, grown);
+    }
+
+    @Test
+    void testMigrate_SplitsOriginalLayoutAndKeepsAnswers() throws IOException {
+        List<String> rows = new ArrayList<>();
+        List<String> demerits = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(idFor(i) + "|First|Last|1|Main St|Melbourne|Victoria|Australia|01-01-2000|false");
+            demerits.add(idFor(i) + "|01-01-2024|" + (1 + i % 6));
+        }
+        Files.write(new File(dir, "persons.txt").toPath(), rows, StandardCharsets.UTF_8);
+        Files.write(new File(dir, "demerits.txt").toPath(), demerits, StandardCharsets.UTF_8);
+        // A change still sitting in the change log must survive the move.
+        Person.useDataDirectory(dir);
+        assertEquals("Success", Person.addDemeritPoints(idFor(5), "02-01-2024", 6));
+        assertEquals("Success", Person.addDemeritPoints(idFor(5), "03-01-2024", 6));
+        assertTrue(Person.isSuspended(idFor(5)));
+        Person.useDataDirectory(null);
+
+        try (WriteAheadLog wal = WriteAheadLog.open(dir)) {
+            assertEquals(100 + 102, ShardMigrator.migrate(dir, SHARDS, wal));
+        }
+
+        assertTrue(new File(dir, "persons.txt" + ShardMigrator.OLD_SUFFIX).exists());
+        assertFalse(new File(dir, "persons.txt").exists());
+        assertEveryLineInItsShard("persons.txt");
+        assertEveryLineInItsShard("demerits.txt");
+
+        Person.useDataDirectory(dir);
+        assertTrue(Person.isSuspended(idFor(5)));
+        assertFalse(Person.isSuspended(idFor(6)));
+        assertEquals("Success", Person.addDemeritPoints(idFor(7), "01-02-2024", 6));
+        assertEquals(Arrays.asList(idFor(7) + "|01-01-2024|2", idFor(7) + "|01-02-2024|6"),
+                demeritsFor(idFor(7)));
+        assertThrows(IOException.class, () -> ShardMigrator.migrate(dir, SHARDS, WriteAheadLog.unlogged()));
+    }
+
+    /** One ID's demerit lines, read straight from its shard. */
+    private List<String> demeritsFor(String id) throws IOException {
+        File file = new File(RegistryShards.shardDir(dir, RegistryShards.shardOf(id, SHARDS)), "demerits.txt");
+        List<String> out = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (PersonRecord.keyOf(line).equals(id)) {
+                out.add(line);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.TestData.idFor;
+import static com.example.TestData.person;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportEngineTest {
+
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(RegistryShards.SHARDS_PROPERTY);
+        System.clearProperty(DemeritIndex.FORMAT_PROPERTY);
+        Person.useDataDirectory(null);
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(new File(dir, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> read(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private List<String> reports(ReportAggregate totals, String name) throws IOException {
+        File out = new File(dir, name);
+        ReportEngine.write(totals, out);
+        List<String> lines = new ArrayList<>();
+        lines.addAll(read(new File(out, ReportEngine.POINTS_BY_AGE_BAND)));
+        lines.addAll(read(new File(out, ReportEngine.OFFENSES_BY_MONTH)));
+        lines.addAll(read(new File(out, ReportEngine.SUSPENSION_RATE_BY_CITY)));
+        return lines;
+    }
+
+    @Test
+    void testAggregate_JoinsOffensesToPersons() throws IOException {
+        write("persons.txt", String.join("\n",
+                "56s_d%&fAB|Amy|Lee|1|High St|Melbourne|Victoria|Australia|15-06-2005|false",
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-1980|true",
+                "23@#xyLMNO|Ann|Ng|5|Bay Rd|Geelong|Victoria|Australia|01-01-1950|false",
+                "27&*abCDEF|Bad|Date|5|Bay Rd|Geelong|Victoria|Australia|31-02-1990|false") + "\n");
+        write("demerits.txt", "56s_d%&fAB|01-03-2024|3\r\n"
+                + "56s_d%&fAB|15-03-2024|4\n"
+                + "34$%abXYZA|01-04-2024|6\r\n"
+                + "not an offense\n"
+                + "23@#xyLMNO|01-04-2024|2\r"
+                + "27&*abCDEF|10-04-2024|1\n"
+                + "nobody|10-05-2024|2");
+        RegistryShards shards = RegistryShards.open(dir, WriteAheadLog.unlogged());
+        ReportAggregate totals = ReportEngine.aggregate(shards, 1);
+
+        // Amy is 19 at both offenses, Tom 44, Ann 74; a bad birth date or no person is unknown
+        assertEquals(2, totals.bandOffenses(0));
+        assertEquals(7, totals.bandPoints(0));
+        assertEquals(6, totals.bandPoints(ReportAggregate.band(44)));
+        assertEquals(2, totals.bandPoints(ReportAggregate.band(74)));
+        assertEquals(2, totals.bandOffenses(ReportAggregate.UNKNOWN_BAND));
+        assertEquals(3, totals.monthOffenses(2024, 4));
+        assertArrayEquals(new long[] { 2, 1 }, totals.city("melbourne"));
+
+        List<String> csv = reports(totals, "out");
+        assertTrue(csv.contains("under 21,6,2,7,0,0,1,1,0,0"), csv.toString());
+        assertTrue(csv.contains("unknown,,2,3,1,1,0,0,0,0"), csv.toString());
+        assertTrue(csv.containsAll(Arrays.asList("2024-03,2,7", "2024-04,3,9", "2024-05,1,2")), csv.toString());
+        assertTrue(csv.containsAll(Arrays.asList("geelong,2,0,0.0000", "melbourne,2,1,0.5000")), csv.toString());
+    }
+
+    @Test
+    void testSlicesAndFormats_GiveTheSameTotals() throws IOException {
+        Random random = new Random(7);
+        StringBuilder persons = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            persons.append(idFor(i)).append("|F|L|").append(i).append("|Main St|City ").append(i % 9)
+                    .append("|Victoria|Australia|01-01-").append(1940 + i % 70).append('|')
+                    .append(i % 4 == 0).append('\n');
+        }
+        write("persons.txt", persons.toString());
+        StringBuilder demerits = new StringBuilder();
+        for (int n = 0; n < 5000; n++) {
+            demerits.append(idFor(random.nextInt(320))).append('|')
+                    .append(String.format("%02d-%02d-%d", 1 + random.nextInt(28), 1 + random.nextInt(12),
+                            2015 + random.nextInt(10)))
+                    .append('|').append(1 + random.nextInt(6)).append(random.nextBoolean() ? "\r\n" : "\n");
+        }
+        write("demerits.txt", demerits.toString());
+
+        RegistryShards text = RegistryShards.open(dir, WriteAheadLog.unlogged());
+        List<String> expected = reports(ReportEngine.aggregate(text, 1), "one");
+        assertEquals(expected, reports(ReportEngine.aggregate(text, 13), "many"));
+
+        DemeritConverter.toBinary(new File(dir, "demerits.txt"), new File(dir, "demerits.bin"));
+        System.setProperty(DemeritIndex.FORMAT_PROPERTY, "binary");
+        RegistryShards binary = RegistryShards.open(dir, WriteAheadLog.unlogged());
+        assertEquals(expected, reports(ReportEngine.aggregate(binary, 5), "binary"));
+    }
+
+    @Test
+    void testWriteMonthEndReports_AcrossShards() throws IOException {
+        System.setProperty(RegistryShards.SHARDS_PROPERTY, "3");
+        Person.useDataDirectory(dir);
+        List<Person> persons = new ArrayList<>();
+        List<Offense> offenses = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            persons.add(person(i));
+            offenses.add(new Offense(idFor(i), "01-01-2024", 4));
+            offenses.add(new Offense(idFor(i), "01-02-2024", 4));
+        }
+        assertEquals(30, Person.addPersons(persons).acceptedCount());
+        Person.addDemeritPoints(offenses);
+
+        File out = new File(dir, "reports");
+        assertTrue(Person.writeMonthEndReports(out));
+        assertTrue(read(new File(out, ReportEngine.POINTS_BY_AGE_BAND)).contains("under 21,6,60,240,0,0,0,60,0,0"));
+        assertEquals(Arrays.asList("month,offenses,points", "2024-01,30,120", "2024-02,30,120"),
+                read(new File(out, ReportEngine.OFFENSES_BY_MONTH)));
+        assertEquals(Arrays.asList("city,persons,suspended,suspension_rate", "melbourne,30,30,1.0000"),
+                read(new File(out, ReportEngine.SUSPENSION_RATE_BY_CITY)));
+    }
+}
@@ -0,0 +1,170 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingPointsViewTest {
+
+    private static final String ADULT = "23#$abCDEF";
+    private static final String YOUNG = "34$%abXYZA";
+
+    @TempDir
+    File dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.write(new File(dir, "persons.txt").toPath(), Arrays.asList(
+                ADULT + "|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|true",
+                YOUNG + "|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2010|false"),
+                StandardCharsets.UTF_8);
+        Files.write(new File(dir, "demerits.txt").toPath(), Arrays.asList(
+                ADULT + "|01-03-2024|6",
+                ADULT + "|01-06-2024|6",
+                ADULT + "|01-09-2024|1",
+                YOUNG + "|10-01-2025|6",
+                YOUNG + "|20-01-2025|1"),
+                StandardCharsets.UTF_8);
+        Person.useDataDirectory(dir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Person.useDataDirectory(null);
+    }
+
+    private static Clock clockAt(LocalDate date) {
+        return Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+    }
+
+    @Test
+    void testRebuild_CountsOnlyOffensesInsideTodaysWindow() throws IOException {
+        Person.enableRollingPointsView(clockAt(LocalDate.of(2025, 1, 15)));
+
+        assertEquals(13, Person.currentDemeritPoints(ADULT));
+        assertEquals(6, Person.currentDemeritPoints(YOUNG)); // 20-01-2025 is still ahead
+        assertTrue(Person.isSuspended(ADULT));
+        assertFalse(Person.isSuspended(YOUNG));
+        assertEquals(0, Person.currentDemeritPoints("99!!zzAAAA"));
+    }
+
+    @Test
+    void testAdvance_ExpiryLiftsSuspensionAndPersistsIt() throws IOException {
+        RollingPointsView view = Person.enableRollingPointsView(clockAt(LocalDate.of(2025, 1, 1)));
+
+        // Still inside the window on the second anniversary itself.
+        view.advanceTo(LocalDate.of(2026, 3, 1));
+        assertEquals(13, Person.currentDemeritPoints(ADULT));
+        assertTrue(Person.isSuspended(ADULT));
+
+        assertEquals(1, view.advanceTo(LocalDate.of(2026, 3, 2)));
+        assertEquals(7, Person.currentDemeritPoints(ADULT));
+        assertFalse(Person.isSuspended(ADULT));
+        assertFalse(new PersonRegistry(new File(dir, "persons.txt")).find(ADULT).suspended);
+    }
+
+    @Test
+    void testAdvance_FutureDatedOffenseSuspendsWhenItComesIntoWindow() throws IOException {
+        RollingPointsView view = Person.enableRollingPointsView(clockAt(LocalDate.of(2025, 1, 1)));
+
+        view.advanceTo(LocalDate.of(2025, 1, 10));
+        assertEquals(6, Person.currentDemeritPoints(YOUNG));
+        assertFalse(Person.isSuspended(YOUNG));
+
+        assertEquals(1, view.advanceTo(LocalDate.of(2025, 1, 20)));
+        assertTrue(Person.isSuspended(YOUNG));
+        assertTrue(new PersonRegistry(new File(dir, "persons.txt")).find(YOUNG).suspended);
+    }
+
+    @Test
+    void testAdvance_NewYearRaisesThresholdAt21() throws IOException {
+        // Born 2004: 7 points is over the limit at 20 but not at 21.
+        Files.write(new File(dir, "persons.txt").toPath(), Arrays.asList(
+                YOUNG + "|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2004|true"),
+                StandardCharsets.UTF_8);
+        Files.write(new File(dir, "demerits.txt").toPath(), Arrays.asList(
+                YOUNG + "|01-06-2024|7"),
+                StandardCharsets.UTF_8);
+        RollingPointsView view = Person.enableRollingPointsView(clockAt(LocalDate.of(2024, 12, 31)));
+        assertTrue(Person.isSuspended(YOUNG));
+
+        assertEquals(1, view.advanceTo(LocalDate.of(2025, 1, 1)));
+        assertFalse(Person.isSuspended(YOUNG));
+    }
+
+    @Test
+    void testOffenseThroughPerson_UpdatesView() throws IOException {
+        Person.enableRollingPointsView(clockAt(LocalDate.of(2025, 1, 15)));
+
+        assertEquals("Success", Person.addDemeritPoints(YOUNG, "14-01-2025", 1));
+        assertEquals(7, Person.currentDemeritPoints(YOUNG));
+        assertTrue(Person.isSuspended(YOUNG));
+    }
+
+    @Test
+    void testQueries_ReadSecondaryIndexes() throws IOException {
+        RollingPointsView view = Person.enableRollingPointsView(clockAt(LocalDate.of(2025, 1, 15)));
+
+        assertEquals(Collections.singletonList(ADULT), view.suspended().collect(Collectors.toList()));
+        List<RollingPointsView.Standing> top = view.topOffenders(5).collect(Collectors.toList());
+        assertEquals(2, top.size());
+        assertEquals(ADULT, top.get(0).getId());
+        assertEquals(13, top.get(0).getPoints());
+        assertTrue(top.get(0).isSuspended());
+        assertEquals(YOUNG, top.get(1).getId());
+        assertEquals(2, view.inCity("melbourne").count());
+        assertEquals(Collections.singletonList(ADULT), view.suspendedIn("MELBOURNE").collect(Collectors.toList()));
+        assertEquals(0, view.inCity("Sydney").count());
+    }
+
+    @Test
+    void testQueries_FollowWritesAndExpiry() throws IOException {
+        RollingPointsView view = Person.enableRollingPointsView(clockAt(LocalDate.of(2025, 1, 15)));
+        String other = "56@#zzABCD";
+        assertTrue(Person.addPerson(new Person(other, "Sam", "Lee",
+                "9|Moorabool St|Geelong|Victoria|Australia", "01-01-1990")));
+        assertEquals("Success", Person.addDemeritPoints(other, "10-01-2025", 5));
+        assertEquals(Collections.singletonList(other), view.inCity("geelong").collect(Collectors.toList()));
+        assertEquals(Arrays.asList(ADULT, YOUNG, other),
+                view.topOffenders(3).map(RollingPointsView.Standing::getId).collect(Collectors.toList()));
+
+        // Moving house moves them between city indexes.
+        assertTrue(Person.updatePersonalDetails(new Person(other, "Sam", "Lee",
+                "9|Lygon St|Melbourne|Victoria|Australia", "01-01-1990")));
+        assertEquals(0, view.inCity("Geelong").count());
+        assertEquals(3, view.inCity("Melbourne").count());
+
+        // ADULT's two 6-point offenses age out: off the top and no longer suspended.
+        view.advanceTo(LocalDate.of(2026, 6, 2));
+        assertEquals(Arrays.asList(YOUNG, other),
+                view.topOffenders(2).map(RollingPointsView.Standing::getId).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList(YOUNG), view.suspended().collect(Collectors.toList()));
+    }
+
+    @Test
+    void testExpiryDay_MatchesWindowRule() {
+        LocalDate from = LocalDate.of(2019, 1, 1);
+        LocalDate to = LocalDate.of(2029, 1, 1);
+        for (LocalDate offense = from; offense.isBefore(to); offense = offense.plusDays(1)) {
+            LocalDate expiry = LocalDate.ofEpochDay(RollingPointsView.expiryDay(offense.toEpochDay()));
+            // In the window the day before expiry, out of it on the expiry day.
+            assertFalse(expiry.minusDays(1).minusYears(2).isAfter(offense), offense.toString());
+            assertTrue(expiry.minusYears(2).isAfter(offense), offense.toString());
+        }
+    }
+}
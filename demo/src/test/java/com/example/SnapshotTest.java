@@ -0,0 +1,186 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.TestData.idFor;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTest {
+
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(DemeritIndex.FORMAT_PROPERTY);
+        System.clearProperty(PrefixMark.VERIFY_PROPERTY);
+        Person.useDataDirectory(null);
+    }
+
+    private static String row(int i) {
+        return idFor(i) + "|First" + i + "|Last" + i + "|" + i + "|Main St|Melbourne|Victoria|Australia|01-01-2000|false";
+    }
+
+    private static long linesScanned() {
+        return RegistryMetrics.get().getLinesScanned();
+    }
+
+    /** Every ID's lines, plus the row and pending change counts, as a fresh load sees them. */
+    private static List<Object> contents(PersonRegistry registry, int ids) throws IOException {
+        List<Object> out = new ArrayList<>();
+        out.add(registry.size());
+        out.add(registry.pendingChanges());
+        for (int i = 0; i < ids; i++) {
+            out.add(registry.linesFor(idFor(i)));
+        }
+        out.add(registry.linesFor("odd"));
+        return out;
+    }
+
+    @Test
+    void testPersons_LoadSnapshotThenReplayWhatCameAfter() throws IOException {
+        File file = new File(dir, "persons.txt");
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(row(i));
+        }
+        rows.add("odd|row with a|different|shape");
+        rows.add(row(7)); // a second row for one ID
+        Files.write(file.toPath(), rows, StandardCharsets.UTF_8);
+        PersonRegistry registry = new PersonRegistry(file);
+        registry.setSuspended(Arrays.asList(idFor(3), idFor(7)), true);
+        registry.writeSnapshot();
+        assertTrue(Snapshot.snapshotFile(file).exists());
+
+        // After the snapshot: two new rows and three change records
+        registry.appendAll(Arrays.asList(row(100), row(101)));
+        registry.setSuspended(idFor(100), true);
+        registry.setSuspended(idFor(7), false);
+
+        long before = linesScanned();
+        long bytesBefore = RegistryMetrics.get().getBytesRead();
+        PersonRegistry restarted = new PersonRegistry(file);
+        List<Object> fromSnapshot = contents(restarted, 102);
+        assertEquals(2 + 3, linesScanned() - before);
+        // Only the tails were read; the covered part is checked, not re-read
+        long tails = 2 * row(100).length() + 3 * ("R|100|" + row(100)).length() + 5 * 2;
+        assertTrue(RegistryMetrics.get().getBytesRead() - bytesBefore <= tails);
+
+        Snapshot.delete(file);
+        assertEquals(contents(new PersonRegistry(file), 102), fromSnapshot);
+        assertTrue(restarted.find(idFor(3)).suspended);
+        assertFalse(restarted.find(idFor(7)).suspended);
+    }
+
+    @Test
+    void testDemerits_LoadSnapshotThenReadTheTail() throws IOException {
+        for (String format : new String[] { "text", "binary" }) {
+            System.setProperty(DemeritIndex.FORMAT_PROPERTY, format);
+            File shard = new File(dir, format);
+            shard.mkdirs();
+            DemeritIndex index = DemeritIndex.open(shard, "demerits.txt", WriteAheadLog.unlogged());
+            for (int i = 0; i < 50; i++) {
+                index.append(idFor(i % 10), "01-01-2024", 19723 + i, 1 + i % 6);
+            }
+            index.writeSnapshot();
+            index.append(idFor(1), "01-01-2025", 20089, 5);
+            index.append(idFor(42), "01-01-2025", 20089, 2);
+
+            long before = linesScanned();
+            DemeritIndex restarted = DemeritIndex.open(shard, "demerits.txt", WriteAheadLog.unlogged());
+            // i = 1, 11, 21, 31, 41 from the snapshot, then 5 from the tail
+            assertEquals(2 + 6 + 4 + 2 + 6 + 5, restarted.pointsBetween(idFor(1), 0, Integer.MAX_VALUE), format);
+            assertEquals(2, restarted.pointsBetween(idFor(42), 0, Integer.MAX_VALUE), format);
+            assertEquals(2, linesScanned() - before, format);
+        }
+    }
+
+    @Test
+    void testEditAnywhereInTheCoveredPart_DropsTheSnapshotWhenVerifyingFully() throws IOException {
+        System.setProperty(PrefixMark.VERIFY_PROPERTY, "true");
+        File file = new File(dir, "persons.txt");
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(row(i));
+        }
+        Files.write(file.toPath(), rows, StandardCharsets.UTF_8);
+        new PersonRegistry(file).writeSnapshot();
+        File demerits = new File(dir, "demerits.txt");
+        DemeritIndex index = DemeritIndex.open(dir, "demerits.txt", WriteAheadLog.unlogged());
+        for (int i = 0; i < 200; i++) {
+            index.append(idFor(i), "01-01-2024", 19723, 1);
+        }
+        index.writeSnapshot();
+
+        // Same length, first row changed, far before the last few KB
+        rows.set(0, row(0).replace("First0", "Other0"));
+        Files.write(file.toPath(), rows, StandardCharsets.UTF_8);
+        List<String> lines = Files.readAllLines(demerits.toPath(), StandardCharsets.UTF_8);
+        lines.set(0, lines.get(0).replace("|1", "|6"));
+        Files.write(demerits.toPath(), lines, StandardCharsets.UTF_8);
+
+        long before = linesScanned();
+        assertEquals("Other0", new PersonRegistry(file).find(idFor(0)).firstName);
+        DemeritIndex restarted = DemeritIndex.open(dir, "demerits.txt", WriteAheadLog.unlogged());
+        assertEquals(6, restarted.pointsBetween(idFor(0), 0, Integer.MAX_VALUE));
+        assertEquals(200 + 200, linesScanned() - before);
+    }
+
+    @Test
+    void testFileReplacedByRename_DropsTheSnapshot() throws IOException {
+        File file = new File(dir, "persons.txt");
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(row(i));
+        }
+        Files.write(file.toPath(), rows, StandardCharsets.UTF_8);
+        new PersonRegistry(file).writeSnapshot();
+
+        // Same length and tail, first row changed, renamed into place as a compaction would
+        rows.set(0, row(0).replace("First0", "Other0"));
+        File tmp = new File(dir, "persons.txt.tmp");
+        Files.write(tmp.toPath(), rows, StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals("Other0", new PersonRegistry(file).find(idFor(0)).firstName);
+    }
+
+    @Test
+    void testStaleOrDamagedSnapshot_IsIgnored() throws IOException {
+        File file = new File(dir, "persons.txt");
+        Files.write(file.toPath(), Arrays.asList(row(0), row(1)), StandardCharsets.UTF_8);
+        new PersonRegistry(file).writeSnapshot();
+
+        // Same length, different last row: the file was rewritten, not appended to
+        Files.write(file.toPath(), Arrays.asList(row(0), row(1).replace("First1", "Other1")),
+                StandardCharsets.UTF_8);
+        assertEquals("Other1", new PersonRegistry(file).find(idFor(1)).firstName);
+
+        // A torn snapshot fails its checksum
+        new PersonRegistry(file).writeSnapshot();
+        try (RandomAccessFile raf = new RandomAccessFile(Snapshot.snapshotFile(file), "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        assertNull(Snapshot.open(file));
+        assertEquals("Other1", new PersonRegistry(file).find(idFor(1)).firstName);
+
+        // A compaction deletes the snapshot along with the sparse index
+        Person.useDataDirectory(dir);
+        assertTrue(Person.writeSnapshots());
+        assertTrue(Snapshot.snapshotFile(file).exists());
+        assertTrue(Person.compactDataFiles());
+        assertFalse(Snapshot.snapshotFile(file).exists());
+    }
+}
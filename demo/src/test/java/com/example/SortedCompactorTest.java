@@ -0,0 +1,198 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedCompactorTest {
+
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void tearDown() {
+        Person.useDataDirectory(null);
+    }
+
+    private static String row(int i, boolean suspended) {
+        return "2" + (char) ('2' + i % 8) + "@#" + String.format("%04d", i) + "ZZ|First" + i + "|Last" + i
+                + "|" + i + "|Main St|Melbourne|Victoria|Australia|01-01-2000|" + suspended;
+    }
+
+    private List<String> read(String name) throws IOException {
+        return Files.readAllLines(new File(dir, name).toPath(), StandardCharsets.UTF_8);
+    }
+
+    private void write(String name, String... lines) throws IOException {
+        Files.write(new File(dir, name).toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testCompactDataFiles_LastRowWinsAndSorts() throws IOException {
+        write("persons.txt",
+                "",
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2010|true",
+                "23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|false",
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2010|false");
+        write("demerits.txt",
+                "34$%abXYZA|01-06-2024|3",
+                "34$%abXYZA|01-01-2023|4",
+                "23#$abCDEF|01-01-2024|2",
+                "34$%abXYZA|01-06-2024|3",
+                "34$%abXYZA|bad date|3");
+        Person.useDataDirectory(dir);
+        // The newest row answers, before the compaction as after it
+        assertFalse(Person.isSuspended("34$%abXYZA"));
+
+        assertTrue(Person.compactDataFiles(true));
+
+        assertEquals(Arrays.asList(
+                "23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|false",
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2010|false"),
+                read("persons.txt"));
+        // Same-ID lines keep their recorded order; only the repeat is gone.
+        assertEquals(Arrays.asList(
+                "23#$abCDEF|01-01-2024|2",
+                "34$%abXYZA|01-06-2024|3",
+                "34$%abXYZA|01-01-2023|4"),
+                read("demerits.txt"));
+        assertTrue(new File(dir, "persons.txt.idx").exists());
+        assertFalse(new File(dir, "demerits.txt.idx").exists());
+        assertFalse(Person.isSuspended("34$%abXYZA"));
+    }
+
+    @Test
+    void testCompactDataFiles_KeepsRepeatedOffensesByDefault() throws IOException {
+        write("persons.txt",
+                "34$%abXYZA|Tom|Jones|20|King St|Melbourne|Victoria|Australia|01-01-2010|false");
+        write("demerits.txt",
+                "34$%abXYZA|01-06-2024|3",
+                "34$%abXYZA|01-06-2024|3");
+        Person.useDataDirectory(dir);
+
+        assertTrue(Person.compactDataFiles());
+        assertEquals(Arrays.asList("34$%abXYZA|01-06-2024|3", "34$%abXYZA|01-06-2024|3"), read("demerits.txt"));
+    }
+
+    @Test
+    void testSparseIndex_IgnoredOnceTheFileIsReplaced() throws IOException {
+        File file = new File(dir, "persons.txt");
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(row(i, false));
+        }
+        Files.write(file.toPath(), rows, StandardCharsets.UTF_8);
+        SortedCompactor.compactPersons(new PersonRegistry(file), WriteAheadLog.unlogged());
+        assertNotNull(SparseIndex.open(file));
+
+        // Same bytes at the end, first row changed, renamed into place
+        List<String> sorted = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        sorted.set(0, sorted.get(0).replace("First", "Other"));
+        File tmp = new File(dir, "persons.txt.tmp");
+        Files.write(tmp.toPath(), sorted, StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertNull(SparseIndex.open(file));
+    }
+
+    @Test
+    void testCompactDemerits_KeepsWhatTheStoreCounts() throws IOException {
+        write("demerits.txt",
+                "34$%abXYZA|01-06-2024|3|late entry",
+                "23#$abCDEF|01-01-2024|2",
+                "34$%abXYZA|01-06-2024|3",
+                "34$%abXYZA|1-6-2024|3",
+                "no fields");
+        File file = new File(dir, "demerits.txt");
+        DemeritIndex before = DemeritIndex.open(dir, "demerits.txt", WriteAheadLog.unlogged());
+        int points = before.pointsBetween("34$%abXYZA", 0, Integer.MAX_VALUE);
+
+        assertEquals(3, SortedCompactor.compactDemerits(file, WriteAheadLog.unlogged(), false));
+        assertEquals(Arrays.asList(
+                "23#$abCDEF|01-01-2024|2",
+                "34$%abXYZA|01-06-2024|3|late entry",
+                "34$%abXYZA|01-06-2024|3"),
+                read("demerits.txt"));
+        DemeritIndex after = DemeritIndex.open(dir, "demerits.txt", WriteAheadLog.unlogged());
+        assertEquals(points, after.pointsBetween("34$%abXYZA", 0, Integer.MAX_VALUE));
+
+        // Dropping repeats merges the two same-day offenses
+        assertEquals(2, SortedCompactor.compactDemerits(file, WriteAheadLog.unlogged(), true));
+        assertEquals(Arrays.asList("23#$abCDEF|01-01-2024|2", "34$%abXYZA|01-06-2024|3|late entry"),
+                read("demerits.txt"));
+    }
+
+    @Test
+    void testSparseIndex_FindsEveryIdAndTheAppendedTail() throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(row(i, false));
+        }
+        Collections.shuffle(rows);
+        File file = new File(dir, "persons.txt");
+        Files.write(file.toPath(), rows, StandardCharsets.UTF_8);
+        PersonRegistry registry = new PersonRegistry(file);
+        assertEquals(1000, SortedCompactor.compactPersons(registry, WriteAheadLog.unlogged()));
+
+        SparseIndex index = SparseIndex.open(file);
+        assertNotNull(index);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(row(i, false), index.last(PersonRecord.keyOf(row(i, false))));
+        }
+        assertNull(index.last("99@#zzzzZZ"));
+
+        // Appends land after the sorted part and are still found.
+        new PersonRegistry(file).append(row(5000, true));
+        new PersonRegistry(file).append(row(7, true));
+        index = SparseIndex.open(file);
+        assertNotNull(index);
+        assertEquals(row(5000, true), index.last(PersonRecord.keyOf(row(5000, true))));
+        assertEquals(row(7, true), index.last(PersonRecord.keyOf(row(7, true))));
+        assertEquals(Arrays.asList(row(7, false), row(7, true)), index.linesFor(PersonRecord.keyOf(row(7, false))));
+    }
+
+    @Test
+    void testRegistryFind_SeeksInsteadOfLoading() throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            rows.add(row(i, i % 3 == 0));
+        }
+        File file = new File(dir, "persons.txt");
+        Files.write(file.toPath(), rows, StandardCharsets.UTF_8);
+        SortedCompactor.compactPersons(new PersonRegistry(file), WriteAheadLog.unlogged());
+
+        PersonRegistry cold = new PersonRegistry(file);
+        long lines = RegistryMetrics.get().getLinesScanned();
+        PersonRecord found = cold.find(PersonRecord.keyOf(row(1500, true)));
+        assertNotNull(found);
+        assertTrue(found.suspended);
+        assertEquals(Collections.singletonList(row(1501, false)), cold.linesFor(PersonRecord.keyOf(row(1501, false))));
+        assertTrue(RegistryMetrics.get().getLinesScanned() - lines <= 4 * SparseIndex.BLOCK_ROWS);
+    }
+
+    @Test
+    void testRegistryCompaction_DropsTheIndex() throws IOException {
+        File file = new File(dir, "persons.txt");
+        Files.write(file.toPath(), Arrays.asList(row(1, false), row(2, false)), StandardCharsets.UTF_8);
+        SortedCompactor.compactPersons(new PersonRegistry(file), WriteAheadLog.unlogged());
+        assertNotNull(SparseIndex.open(file));
+
+        PersonRegistry registry = new PersonRegistry(file);
+        registry.setSuspended(PersonRecord.keyOf(row(2, false)), true);
+        registry.compact();
+
+        assertFalse(SparseIndex.indexFile(file).exists());
+        assertTrue(new PersonRegistry(file).find(PersonRecord.keyOf(row(2, false))).suspended);
+    }
+}
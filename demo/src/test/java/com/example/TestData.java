@@ -0,0 +1,31 @@
+package com.example;
+
+/** Valid IDs and persons for tests that need many of them. */
+final class TestData {
+
+    private TestData() {
+    }
+
+    /** How many distinct IDs {@link #idFor(int)} can make. */
+    static final int MAX_IDS = 10_000 * 26 * 26;
+
+    /**
+     * A distinct valid ID per i in [0, MAX_IDS), always 10 characters: [2-9]{2}
+     * prefix, two specials, the last four digits of i, and i / 10000 as two
+     * letters counting down from "ZZ".
+     */
+    static String idFor(int i) {
+        if (i < 0 || i >= MAX_IDS) {
+            throw new IllegalArgumentException("no test ID for " + i);
+        }
+        int block = i / 10_000;
+        return "2" + (char) ('2' + i % 8) + "@#" + String.format("%04d", i % 10_000)
+                + (char) ('Z' - block / 26) + (char) ('Z' - block % 26);
+    }
+
+    /** A valid person with ID idFor(n), born 2008, living in Melbourne. */
+    static Person person(int n) {
+        return new Person(idFor(n), "First" + n, "Last" + n,
+                n + "|Main St|Melbourne|Victoria|Australia", "01-01-2008");
+    }
+}
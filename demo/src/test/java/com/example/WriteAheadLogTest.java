@@ -0,0 +1,176 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    File dir;
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(File f) throws IOException {
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the lines and returns the log as it was on disk before close, as
+     * if the process had died right after the last commit.
+     */
+    private byte[] logAfterCrash(File target, String... lines) throws IOException {
+        WriteAheadLog wal = WriteAheadLog.open(dir, 0);
+        long ticket = 0;
+        for (String line : lines) {
+            ticket = wal.append(target, bytes(line));
+        }
+        wal.awaitDurable(ticket);
+        byte[] log = Files.readAllBytes(wal.file().toPath());
+        wal.close();
+        return log;
+    }
+
+    @Test
+    void testOpen_ReplaysWritesLostFromDataFile() throws IOException {
+        File data = new File(dir, "demerits.txt");
+        byte[] log = logAfterCrash(data, "a|01-01-2024|3\n", "b|02-01-2024|4\n");
+
+        // The data file lost its second line and got a torn, never-logged tail instead.
+        Files.write(data.toPath(), bytes("a|01-01-2024|3\nb|02-0"));
+        Files.write(new File(dir, WriteAheadLog.FILE_NAME).toPath(), log);
+
+        WriteAheadLog.open(dir, 0).close();
+        assertEquals("a|01-01-2024|3\nb|02-01-2024|4\n", read(data));
+    }
+
+    @Test
+    void testOpen_CutsUnloggedTailAfterLastRecord() throws IOException {
+        File data = new File(dir, "persons.txt");
+        byte[] log = logAfterCrash(data, "one\n");
+
+        Files.write(data.toPath(), bytes("one\npartial"));
+        Files.write(new File(dir, WriteAheadLog.FILE_NAME).toPath(), log);
+
+        WriteAheadLog.open(dir, 0).close();
+        assertEquals("one\n", read(data));
+    }
+
+    @Test
+    void testOpen_StopsAtRecordWithBadChecksum() throws IOException {
+        File data = new File(dir, "persons.txt");
+        byte[] log = logAfterCrash(data, "one\n", "two\n");
+        // Corrupt the last byte of the last record's payload.
+        log[log.length - 1] ^= 0x7f;
+
+        Files.write(data.toPath(), bytes("one\ntwo\n"));
+        Files.write(new File(dir, WriteAheadLog.FILE_NAME).toPath(), log);
+
+        WriteAheadLog.open(dir, 0).close();
+        assertEquals("one\n", read(data));
+    }
+
+    @Test
+    void testClose_LeavesNothingToReplay() throws IOException {
+        File data = new File(dir, "persons.txt");
+        logAfterCrash(data, "one\n");
+        File log = new File(dir, WriteAheadLog.FILE_NAME);
+        assertEquals(0, log.length());
+
+        // Edited by hand between runs: must survive the next open.
+        Files.write(data.toPath(), bytes("edited\n"));
+        WriteAheadLog.open(dir, 0).close();
+        assertEquals("edited\n", read(data));
+    }
+
+    @Test
+    void testStaticApi_OpensLogOnFirstUse() {
+        Person.useDataDirectory(dir);
+        try {
+            assertArrayEquals(new String[0], dir.list());
+            assertTrue(Person.addPerson(TestData.person(1)));
+            assertTrue(new File(dir, WriteAheadLog.FILE_NAME).exists());
+        } finally {
+            Person.useDataDirectory(null);
+        }
+    }
+
+    @Test
+    void testStaticApi_ReplaysLogBeforeFirstRead() throws IOException {
+        File data = new File(dir, "persons.txt");
+        byte[] log = logAfterCrash(data,
+                "23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|true\n");
+        Files.write(data.toPath(), new byte[0]);
+        Files.write(new File(dir, WriteAheadLog.FILE_NAME).toPath(), log);
+
+        Person.useDataDirectory(dir);
+        try {
+            assertEquals(0, data.length());
+            assertTrue(Person.isSuspended("23#$abCDEF"));
+        } finally {
+            Person.useDataDirectory(null);
+        }
+    }
+
+    @Test
+    void testAwaitDurable_ConcurrentWritersShareForces() throws Exception {
+        File data = new File(dir, "demerits.txt");
+        WriteAheadLog wal = WriteAheadLog.open(dir, 200_000);
+        int threads = 8;
+        int perThread = 100;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        wal.awaitDurable(wal.append(data, bytes(id + "|" + i + "\n")));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(wal.forceCount() < threads * perThread, "forces: " + wal.forceCount());
+        wal.close();
+        assertEquals(threads * perThread, Files.readAllLines(data.toPath()).size());
+    }
+
+    @Test
+    void testRegistry_CompactionCheckpointsLog() throws IOException {
+        File persons = new File(dir, "persons.txt");
+        Files.write(persons.toPath(), bytes(
+                "23#$abCDEF|Alice|Smith|123|Main St|Melbourne|Victoria|Australia|01-01-2000|false\n"));
+        WriteAheadLog wal = WriteAheadLog.open(dir, 0);
+        PersonRegistry registry = new PersonRegistry(persons, wal);
+        registry.setSuspended("23#$abCDEF", true);
+        assertTrue(new File(dir, WriteAheadLog.FILE_NAME).length() > 0);
+
+        registry.compact();
+        try (RandomAccessFile log = new RandomAccessFile(new File(dir, WriteAheadLog.FILE_NAME), "r")) {
+            // Only the checkpoint record is left.
+            assertTrue(log.length() < 128, "log length " + log.length());
+        }
+        wal.close();
+        assertTrue(new PersonRegistry(persons).find("23#$abCDEF").suspended);
+    }
+}